@@ -0,0 +1,73 @@
+package com.zemichat.app;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+/**
+ * Process-wide foreground state, kept up to date by activity callbacks.
+ *
+ * ZemichatMessagingService asks "is the app in the foreground?" on every
+ * incoming call push. Answering that with ActivityManager means an IPC and
+ * a process list allocation on the ring path, and getRunningAppProcesses()
+ * is unreliable on newer Android versions anyway. Counting started
+ * activities here makes the check a single volatile read.
+ */
+final class AppLifecycleTracker implements Application.ActivityLifecycleCallbacks {
+
+    private static final AppLifecycleTracker INSTANCE = new AppLifecycleTracker();
+
+    // Only touched on the main thread, where all lifecycle callbacks run
+    private int startedActivities = 0;
+    private volatile boolean foreground = false;
+
+    private AppLifecycleTracker() {
+    }
+
+    static void install(Application application) {
+        application.registerActivityLifecycleCallbacks(INSTANCE);
+    }
+
+    /**
+     * True while at least one of our activities is started (visible).
+     * Safe to call from any thread.
+     */
+    static boolean isAppInForeground() {
+        return INSTANCE.foreground;
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        startedActivities++;
+        foreground = true;
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        if (startedActivities > 0) startedActivities--;
+        // Configuration changes stop and immediately restart the activity;
+        // don't report a background blip in between.
+        if (activity.isChangingConfigurations()) return;
+        foreground = startedActivities > 0;
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+    }
+}
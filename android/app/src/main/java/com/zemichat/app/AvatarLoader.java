@@ -0,0 +1,271 @@
+package com.zemichat.app;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caller and sender avatars for notifications and the call screen.
+ *
+ * Avatars are downsampled to AVATAR_EDGE on decode and kept in two tiers:
+ * a small in-memory LruCache and PNG files under getCacheDir()/avatars, so
+ * the same face is downloaded once and then shared by the ring notification,
+ * IncomingCallActivity and every message notification from that person.
+ *
+ * Nothing here may hold up a ring. peek() only touches the caches; misses
+ * are fetched on a background thread with hard connect/read timeouts, and
+ * callers fall back to the initial until (or unless) the bitmap arrives.
+ *
+ * Supabase avatar URLs may be signed, so the cache key is the URL without its
+ * query string — a fresh signature for the same object is still a hit.
+ * Avatars are uploaded with upsert to that same fixed path, so both tiers
+ * only trust an entry for TTL_MS, as MediaCache does for the WebView.
+ */
+final class AvatarLoader {
+
+    interface Callback {
+        /** Called on the main thread; bitmap is null if the avatar could not be loaded. */
+        void onAvatar(Bitmap bitmap);
+    }
+
+    static final int AVATAR_EDGE = 192;
+
+    private static final String DIR_NAME = "avatars";
+    private static final int MEMORY_CACHE_BYTES = 2 * 1024 * 1024;
+    private static final long MAX_DISK_BYTES = 8L * 1024 * 1024;
+    private static final long TTL_MS = 60 * 60 * 1000L;
+    private static final int MAX_DOWNLOAD_BYTES = 2 * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 2_000;
+    private static final int READ_TIMEOUT_MS = 3_000;
+
+    private static final LruCache<String, Entry> memory = new LruCache<String, Entry>(MEMORY_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(String key, Entry value) {
+            return value.bitmap.getByteCount();
+        }
+    };
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor(
+            r -> new Thread(r, "AvatarLoader"));
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private AvatarLoader() {
+    }
+
+    /**
+     * Memory, then disk. Never touches the network; the disk read is a small
+     * PNG, so this is safe on the FCM thread but not meant for the UI thread.
+     */
+    static Bitmap peek(Context context, String url) {
+        String key = cacheKey(url);
+        if (key == null) return null;
+        long now = System.currentTimeMillis();
+        Entry entry = memory.get(key);
+        if (entry != null) {
+            if (now - entry.loadedAt <= TTL_MS) return entry.bitmap;
+            memory.remove(key);
+        }
+
+        File file = diskFile(context, key);
+        if (!file.isFile() || now - file.lastModified() > TTL_MS) return null;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+        if (bitmap != null) memory.put(key, new Entry(bitmap, file.lastModified()));
+        return bitmap;
+    }
+
+    /**
+     * Load asynchronously and deliver on the main thread. Cache hits still
+     * come back through the callback, just without a download.
+     */
+    static void load(Context context, String url, Callback callback) {
+        Context app = context.getApplicationContext();
+        if (cacheKey(url) == null) {
+            mainHandler.post(() -> callback.onAvatar(null));
+            return;
+        }
+        executor.execute(() -> {
+            Bitmap bitmap = loadBlocking(app, url);
+            mainHandler.post(() -> callback.onAvatar(bitmap));
+        });
+    }
+
+    /**
+     * Load on the calling (background) thread, giving up after timeoutMs.
+     * For message notifications, which may wait a moment for a face.
+     */
+    static Bitmap get(Context context, String url, long timeoutMs) {
+        Bitmap bitmap = peek(context, url);
+        if (bitmap != null || cacheKey(url) == null) return bitmap;
+        Context app = context.getApplicationContext();
+        Future<Bitmap> future = executor.submit(() -> loadBlocking(app, url));
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // Keeps downloading in the background and lands in the cache
+            return null;
+        }
+    }
+
+    /**
+     * Circular crop, for the large icon and the call screen.
+     */
+    static Bitmap circle(Bitmap src) {
+        int edge = Math.min(src.getWidth(), src.getHeight());
+        Bitmap out = Bitmap.createBitmap(edge, edge, Bitmap.Config.ARGB_8888);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        BitmapShader shader = new BitmapShader(src, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        paint.setShader(shader);
+        float r = edge / 2f;
+        new Canvas(out).drawCircle(r, r, r, paint);
+        return out;
+    }
+
+    private static Bitmap loadBlocking(Context context, String url) {
+        String key = cacheKey(url);
+        Bitmap bitmap = peek(context, url);
+        if (bitmap != null) return bitmap;
+        try {
+            byte[] bytes = download(url);
+            if (bytes == null) return null;
+            bitmap = decodeSampled(bytes);
+            if (bitmap == null) return null;
+            memory.put(key, new Entry(bitmap, System.currentTimeMillis()));
+            writeToDisk(context, key, bitmap);
+            return bitmap;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static byte[] download(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        try {
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) return null;
+            long length = conn.getContentLengthLong();
+            if (length > MAX_DOWNLOAD_BYTES) return null;
+            try (InputStream in = conn.getInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? (int) length : 16 * 1024);
+                byte[] buffer = new byte[8 * 1024];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    if (out.size() + n > MAX_DOWNLOAD_BYTES) return null;
+                    out.write(buffer, 0, n);
+                }
+                return out.toByteArray();
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    static Bitmap decodeSampled(byte[] bytes) {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inSampleSize = ImageTranscoder.computeSampleSize(
+                Math.min(bounds.outWidth, bounds.outHeight), AVATAR_EDGE);
+        Bitmap decoded = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, opts);
+        if (decoded == null) return null;
+
+        // Centre square at AVATAR_EDGE — every consumer shows a circle or square
+        int edge = Math.min(decoded.getWidth(), decoded.getHeight());
+        int target = Math.min(edge, AVATAR_EDGE);
+        Bitmap square = Bitmap.createBitmap(decoded,
+                (decoded.getWidth() - edge) / 2, (decoded.getHeight() - edge) / 2, edge, edge);
+        Bitmap scaled = target == edge ? square : Bitmap.createScaledBitmap(square, target, target, true);
+        if (square != decoded) decoded.recycle();
+        if (scaled != square) square.recycle();
+        return scaled;
+    }
+
+    private static synchronized void writeToDisk(Context context, String key, Bitmap bitmap) {
+        File dir = new File(context.getCacheDir(), DIR_NAME);
+        if (!dir.exists() && !dir.mkdirs()) return;
+        File target = diskFile(context, key);
+        File tmp = new File(dir, target.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                tmp.delete();
+                return;
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            return;
+        }
+        trimDisk(dir, target);
+    }
+
+    private static void trimDisk(File dir, File keep) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= MAX_DISK_BYTES) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : files) {
+            if (total <= MAX_DISK_BYTES) break;
+            if (f.equals(keep)) continue;
+            long length = f.length();
+            if (f.delete()) total -= length;
+        }
+    }
+
+    private static File diskFile(Context context, String key) {
+        byte[] hash = SharedFileStore.newSha256().digest(key.getBytes(StandardCharsets.UTF_8));
+        return new File(new File(context.getCacheDir(), DIR_NAME), SharedFileStore.toHex(hash) + ".png");
+    }
+
+    /**
+     * Stable key for a URL: scheme, host and path. Null for anything that
+     * isn't an http(s) URL (empty strings from the push payload included).
+     */
+    static String cacheKey(String url) {
+        if (url == null || url.isEmpty()) return null;
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        if (!"https".equals(scheme) && !"http".equals(scheme)) return null;
+        if (uri.getHost() == null || uri.getPath() == null) return null;
+        return uri.getHost() + uri.getPath();
+    }
+
+    private static final class Entry {
+        final Bitmap bitmap;
+        final long loadedAt;
+
+        Entry(Bitmap bitmap, long loadedAt) {
+            this.bitmap = bitmap;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
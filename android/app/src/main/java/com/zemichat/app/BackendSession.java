@@ -0,0 +1,86 @@
+package com.zemichat.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * The Supabase endpoint and the signed-in user's access token, mirrored from
+ * JS so native code can talk to the backend while the WebView is not running
+ * (declining from the notification, background delivery).
+ *
+ * JS pushes a fresh copy on every auth state change. Native code never
+ * refreshes the token itself: Supabase rotates refresh tokens and flags
+ * reuse, so a native refresh would sign the JS session out. If the stored
+ * token has expired, native requests fail with 401 and callers fall back
+ * to whatever the app did before.
+ *
+ * The prefs file is excluded from Auto Backup and device transfer
+ * (res/xml/backup_rules.xml, data_extraction_rules.xml), so the token
+ * never leaves this device.
+ */
+final class BackendSession {
+
+    private static final String PREFS = "backend_session";
+    private static final String KEY_URL = "url";
+    private static final String KEY_ANON_KEY = "anonKey";
+    private static final String KEY_ACCESS_TOKEN = "accessToken";
+    private static final String KEY_USER_ID = "userId";
+    private static final String KEY_EXPIRES_AT = "expiresAt";
+
+    // Treat a token this close to expiry as already expired
+    private static final long EXPIRY_SKEW_MS = 30_000;
+
+    final String url;
+    final String anonKey;
+    final String accessToken;
+    final String userId;
+    /** Epoch ms, 0 if unknown. */
+    final long expiresAt;
+
+    BackendSession(String url, String anonKey, String accessToken, String userId, long expiresAt) {
+        this.url = url;
+        this.anonKey = anonKey;
+        this.accessToken = accessToken;
+        this.userId = userId;
+        this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired() {
+        return expiresAt > 0 && System.currentTimeMillis() > expiresAt - EXPIRY_SKEW_MS;
+    }
+
+    SupabaseRestClient restClient() {
+        return new SupabaseRestClient(url, anonKey, accessToken);
+    }
+
+    /**
+     * The stored session, or null when signed out / never synced.
+     */
+    static BackendSession load(Context context) {
+        SharedPreferences prefs = prefs(context);
+        String url = prefs.getString(KEY_URL, null);
+        String anonKey = prefs.getString(KEY_ANON_KEY, null);
+        String accessToken = prefs.getString(KEY_ACCESS_TOKEN, null);
+        String userId = prefs.getString(KEY_USER_ID, null);
+        if (url == null || anonKey == null || accessToken == null || userId == null) return null;
+        return new BackendSession(url, anonKey, accessToken, userId, prefs.getLong(KEY_EXPIRES_AT, 0));
+    }
+
+    static void save(Context context, BackendSession session) {
+        prefs(context).edit()
+                .putString(KEY_URL, session.url)
+                .putString(KEY_ANON_KEY, session.anonKey)
+                .putString(KEY_ACCESS_TOKEN, session.accessToken)
+                .putString(KEY_USER_ID, session.userId)
+                .putLong(KEY_EXPIRES_AT, session.expiresAt)
+                .apply();
+    }
+
+    static void clear(Context context) {
+        prefs(context).edit().clear().apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
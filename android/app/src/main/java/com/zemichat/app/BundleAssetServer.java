@@ -0,0 +1,243 @@
+package com.zemichat.app;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetManager;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.MimeTypeMap;
+import android.webkit.WebResourceResponse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Serves the hashed Vite chunks (public/assets/*) from plain files instead
+ * of the APK.
+ *
+ * Capacitor's local server opens every script through AssetManager, and
+ * .js assets are stored deflated in the APK, so each cold start inflates
+ * the agora, emoji-picker and leaflet vendor chunks again. Here they are
+ * extracted once per installed version into getFilesDir()/webapp/<version>
+ * — in the background, after launch, so the first start of a new version
+ * is never slowed down — and from then on mapped read-only with
+ * FileChannel.map. Pages come straight from the page cache; the mappings
+ * are kept for the life of the process.
+ *
+ * Only /assets/ is served from here: file names there carry a content hash,
+ * so a file extracted for a version never changes. index.html stays with
+ * Capacitor, which injects its bridge script into it.
+ *
+ * No Cache-Control is sent: Chromium never puts responses from
+ * shouldInterceptRequest in its HTTP cache, so caching headers would do
+ * nothing. For the same reason WebView's V8 code cache, which the app has
+ * no switch for anyway, doesn't apply to these scripts. What is saved here
+ * is the inflate and the copy, not the compile.
+ */
+final class BundleAssetServer {
+
+    private static final String TAG = "BundleAssetServer";
+    private static final String WEB_ROOT = "public";
+    private static final String ASSETS_DIR = "assets";
+    private static final String URL_PREFIX = "/" + ASSETS_DIR + "/";
+    private static final String DIR_NAME = "webapp";
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private static volatile BundleAssetServer instance;
+
+    private final Context context;
+    private final Map<String, ByteBuffer> mapped = new ConcurrentHashMap<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile File root; // Set once extraction is complete
+    private volatile boolean checkedExisting;
+
+    private BundleAssetServer(Context context) {
+        this.context = context;
+    }
+
+    static BundleAssetServer get(Context context) {
+        BundleAssetServer server = instance;
+        if (server == null) {
+            synchronized (BundleAssetServer.class) {
+                server = instance;
+                if (server == null) {
+                    server = new BundleAssetServer(context.getApplicationContext());
+                    instance = server;
+                }
+            }
+        }
+        return server;
+    }
+
+    /**
+     * Make sure this version's chunks are extracted, on a low-priority
+     * thread. Until it finishes, serve() returns null and Capacitor serves
+     * from the APK as before. Only the first call does anything.
+     */
+    void prepare() {
+        if (!started.compareAndSet(false, true)) return;
+        Thread thread = new Thread(this::extractIfNeeded, "BundleExtract");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * This version's extracted chunks, or null while they aren't complete.
+     * A previous process's extraction counts, so a process started for a
+     * call serves (and CallPrewarmer warms) the files from its first request.
+     */
+    File extractedDir() {
+        File dir = root;
+        if (dir == null && !checkedExisting) {
+            checkedExisting = true;
+            File candidate = new File(new File(context.getFilesDir(), DIR_NAME), versionKey());
+            if (new File(candidate, COMPLETE_MARKER).isFile()) {
+                root = candidate;
+                dir = candidate;
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * A response for an /assets/ request on the app's own origin, or null.
+     */
+    WebResourceResponse serve(Uri uri) {
+        File dir = extractedDir();
+        String path = uri.getPath();
+        if (dir == null || path == null || !path.startsWith(URL_PREFIX)) return null;
+        String name = path.substring(URL_PREFIX.length());
+        if (name.isEmpty() || name.contains("..")) return null;
+
+        ByteBuffer buffer = mapped.get(name);
+        if (buffer == null) {
+            File file = new File(dir, name);
+            if (!file.isFile()) return null;
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                 FileChannel channel = raf.getChannel()) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mapped.put(name, map);
+                buffer = map;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        ByteBuffer view = buffer.duplicate();
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Length", String.valueOf(view.remaining()));
+        return new WebResourceResponse(mimeType(name), null, 200, "OK", headers,
+                new ByteBufferInputStream(view));
+    }
+
+    private void extractIfNeeded() {
+        File base = new File(context.getFilesDir(), DIR_NAME);
+        File dir = new File(base, versionKey());
+        try {
+            if (!new File(dir, COMPLETE_MARKER).isFile()) {
+                deleteRecursively(base); // Older versions and half-done attempts
+                extract(context.getAssets(), dir);
+            }
+            root = dir;
+        } catch (IOException e) {
+            Log.w(TAG, "Extraction failed, serving from the APK", e);
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void extract(AssetManager assets, File dir) throws IOException {
+        String[] names = assets.list(WEB_ROOT + "/" + ASSETS_DIR);
+        if (names == null || names.length == 0) throw new IOException("No bundled assets");
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Could not create " + dir);
+
+        byte[] buffer = new byte[64 * 1024];
+        for (String name : names) {
+            try (InputStream in = assets.open(WEB_ROOT + "/" + ASSETS_DIR + "/" + name);
+                 FileOutputStream out = new FileOutputStream(new File(dir, name))) {
+                int n;
+                while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+            } catch (IOException e) {
+                // A subdirectory lists fine but can't be opened — Vite
+                // doesn't produce any under assets/, so skip it
+                if (assets.list(WEB_ROOT + "/" + ASSETS_DIR + "/" + name).length == 0) throw e;
+            }
+        }
+        if (!new File(dir, COMPLETE_MARKER).createNewFile()) {
+            throw new IOException("Could not mark " + dir + " complete");
+        }
+    }
+
+    // Changes with every install or update of the APK, and with it the bundle
+    private String versionKey() {
+        try {
+            return String.valueOf(context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            return "0";
+        }
+    }
+
+    private static String mimeType(String name) {
+        if (name.endsWith(".js") || name.endsWith(".mjs")) return "text/javascript";
+        if (name.endsWith(".css")) return "text/css";
+        if (name.endsWith(".wasm")) return "application/wasm";
+        String ext = MimeTypeMap.getFileExtensionFromUrl(name);
+        String type = ext != null ? MimeTypeMap.getSingleton().getMimeTypeFromExtension(ext) : null;
+        return type != null ? type : "application/octet-stream";
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) deleteRecursively(child);
+        }
+        file.delete();
+    }
+
+    /**
+     * Reads a (mapped) buffer without copying it first.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.zemichat.app;
+
+import android.os.SystemClock;
+
+import java.util.ArrayDeque;
+
+/**
+ * Hand-off point for call actions taken in native UI (Answer on the
+ * notification, IncomingCallActivity or a Telecom device) to the JS layer.
+ *
+ * Replaces a plain static field that was read-and-cleared by JS polling:
+ * two writers (IncomingCallActivity and MainActivity.handleCallIntent)
+ * could overwrite each other, and an action was lost if JS polled at the
+ * wrong moment. Here every access is synchronized, duplicates for the same
+ * call are dropped (including a re-delivered ANSWER_CALL intent after an
+ * activity recreate), and entries expire so a stale Answer can't auto-join
+ * a call that ended long ago.
+ *
+ * When CallNotificationPlugin has a JS "callAction" listener attached the
+ * action is pushed straight away instead of being queued.
+ */
+final class CallActionQueue {
+
+    /** Pushes an action to JS; returns false if nobody is listening. */
+    interface Listener {
+        boolean deliver(CallNotificationPlugin.CallAction action);
+    }
+
+    // Ring timeout plus a cold WebView start on a slow device
+    static final long EXPIRY_MS = 90_000;
+    // As long as CallRegistry remembers the call as answered, so a late
+    // re-delivered Answer is caught for as long as it could still pass there
+    static final long DEDUPE_MS = CallRegistry.RETAIN_TERMINAL_MS;
+    private static final int MAX_PENDING = 8;
+    private static final int MAX_SEEN = 32;
+
+    private static final ArrayDeque<CallNotificationPlugin.CallAction> pending = new ArrayDeque<>();
+    // Recently offered actions, delivered or not, for duplicate detection
+    private static final ArrayDeque<CallNotificationPlugin.CallAction> seen = new ArrayDeque<>();
+    private static Listener listener;
+
+    private CallActionQueue() {
+    }
+
+    /**
+     * Record an action. Delivered immediately if a listener accepts it,
+     * otherwise kept until polled or expired. Returns false if the same
+     * action for the same call was already offered within DEDUPE_MS.
+     */
+    static boolean offer(CallNotificationPlugin.CallAction action) {
+        Listener current;
+        synchronized (CallActionQueue.class) {
+            dropExpired();
+            if (isDuplicate(action)) return false;
+            seen.addLast(action);
+            if (seen.size() > MAX_SEEN) seen.removeFirst();
+            current = listener;
+        }
+
+        if (current != null && current.deliver(action)) return true;
+
+        synchronized (CallActionQueue.class) {
+            if (pending.size() == MAX_PENDING) pending.removeFirst();
+            pending.addLast(action);
+        }
+        return true;
+    }
+
+    /**
+     * Take the oldest live action, or null.
+     */
+    static synchronized CallNotificationPlugin.CallAction poll() {
+        dropExpired();
+        return pending.pollFirst();
+    }
+
+    static synchronized void setListener(Listener l) {
+        listener = l;
+    }
+
+    static synchronized void clearListener(Listener l) {
+        if (listener == l) listener = null;
+    }
+
+    private static void dropExpired() {
+        long now = SystemClock.elapsedRealtime();
+        long cutoff = now - EXPIRY_MS;
+        while (!pending.isEmpty() && pending.peekFirst().createdAt < cutoff) {
+            pending.removeFirst();
+        }
+        long seenCutoff = now - DEDUPE_MS;
+        while (!seen.isEmpty() && seen.peekFirst().createdAt < seenCutoff) {
+            seen.removeFirst();
+        }
+    }
+
+    private static boolean isDuplicate(CallNotificationPlugin.CallAction action) {
+        if (action.callLogId == null) return false;
+        for (CallNotificationPlugin.CallAction a : seen) {
+            if (a.action.equals(action.action) && action.callLogId.equals(a.callLogId)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,99 @@
+package com.zemichat.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tells the caller straight from native code that the call was declined.
+ *
+ * Declining from the notification or IncomingCallActivity used to only
+ * cancel the local UI, so the caller kept ringing (and held an Agora
+ * channel) until their 30 s timeout. This performs the same writes as
+ * CallContext.declineCall in JS: mark the call log declined, insert a
+ * DECLINE signal the caller's Realtime subscription reacts to, then clear
+ * the call's signals.
+ *
+ * Each request is retried with exponential backoff on network errors and
+ * 5xx/429, inside a deadline that fits a goAsync() broadcast window.
+ */
+final class CallDeclineSender {
+
+    private static final String TAG = "CallDeclineSender";
+
+    // goAsync() receivers get ~10 s before the system considers them hung
+    private static final long DEADLINE_MS = 8_000;
+    // Matches SIGNAL_EXPIRY_SECONDS in src/services/call.ts
+    private static final long SIGNAL_EXPIRY_MS = 60_000;
+
+    private static final ExecutorService executor =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "CallDecline"));
+
+    private CallDeclineSender() {
+    }
+
+    /**
+     * Send the decline in the background. If pendingResult is non-null it is
+     * finished once the work is done, so a receiver can call goAsync() and
+     * return immediately.
+     */
+    static void send(Context context, String callLogId, String chatId,
+                     BroadcastReceiver.PendingResult pendingResult) {
+        Context app = context.getApplicationContext();
+        executor.execute(() -> {
+            try {
+                if (callLogId != null && chatId != null) {
+                    sendNow(app, callLogId, chatId);
+                }
+            } finally {
+                if (pendingResult != null) pendingResult.finish();
+            }
+        });
+    }
+
+    private static void sendNow(Context context, String callLogId, String chatId) {
+        BackendSession session = BackendSession.load(context);
+        if (session == null || session.isExpired()) {
+            Log.w(TAG, "No valid session — caller will time out instead");
+            return;
+        }
+
+        SupabaseRestClient client = session.restClient();
+        long deadline = SystemClock.elapsedRealtime() + DEADLINE_MS;
+        try {
+            JSONObject status = new JSONObject().put("status", "declined");
+            JSONObject signal = new JSONObject()
+                    .put("chat_id", chatId)
+                    .put("call_log_id", callLogId)
+                    .put("caller_id", session.userId)
+                    .put("signal_type", "decline")
+                    .put("expires_at", isoTimestamp(System.currentTimeMillis() + SIGNAL_EXPIRY_MS));
+
+            SupabaseRestClient.withRetry(deadline,
+                    () -> client.update("call_logs", "id=eq." + callLogId, status));
+            // The signal is what actually stops the caller's ringing
+            if (!SupabaseRestClient.withRetry(deadline, () -> client.insert("call_signals", signal))) return;
+            SupabaseRestClient.withRetry(deadline,
+                    () -> client.delete("call_signals", "call_log_id=eq." + callLogId));
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not build decline payload", e);
+        }
+    }
+
+    private static String isoTimestamp(long epochMs) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(epochMs));
+    }
+}
@@ -1,26 +1,34 @@
 package com.zemichat.app;
 
-import android.app.NotificationManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Build;
+import android.telecom.DisconnectCause;
 
 /**
  * Broadcast receiver for the "Decline" action on the incoming call notification.
- * Dismisses the notification and finishes IncomingCallActivity if running.
- * The caller's 30-second timeout will handle marking the call as missed.
+ * Dismisses the notification, finishes IncomingCallActivity if running and
+ * sends the decline to the backend so the caller stops ringing right away.
  */
 public class CallDismissReceiver extends BroadcastReceiver {
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        // Cancel the notification
-        NotificationManager nm =
-                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        nm.cancel(9001); // CALL_NOTIFICATION_ID
+        String callLogId = intent.getStringExtra("callLogId");
 
-        // Tell IncomingCallActivity to finish (if it's open)
-        Intent closeIntent = new Intent("com.zemichat.app.DISMISS_CALL");
-        context.sendBroadcast(closeIntent);
+        // Cancel the notification and finish IncomingCallActivity (if it's open)
+        IncomingCallNotifier.dismiss(context, callLogId);
+
+        // Already answered, cancelled or timed out — nothing to decline
+        if (!CallRegistry.transition(callLogId, CallRegistry.State.DECLINED)) return;
+
+        // Release the Telecom call so audio focus and call state are freed
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            CallTelecom.end(callLogId, DisconnectCause.REJECTED);
+        }
+
+        // Keep the process alive until the decline has been sent
+        CallDeclineSender.send(context, callLogId, intent.getStringExtra("chatId"), goAsync());
     }
 }
@@ -0,0 +1,176 @@
+package com.zemichat.app;
+
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Push-to-ring-to-answer latency, per call and in aggregate.
+ *
+ * Each stage of an incoming call is stamped with elapsedRealtimeNanos into a
+ * fixed ring of CAPACITY slots. Writers never lock: a slot is claimed with
+ * one atomic increment and published through its sequence number, the same
+ * way a seqlock works, so marking a stage costs a few atomic writes on the
+ * FCM thread or the main thread. Readers skip slots whose sequence changed
+ * while they were copying.
+ *
+ * Every stage after PUSH_RECEIVED also lands in a histogram of its delay
+ * from the push, with fixed log-spaced buckets, so percentiles survive the
+ * ring wrapping. Everything lives in memory and dies with the process;
+ * JS exports it through CallNotificationPlugin.getCallLatencyMetrics.
+ */
+final class CallLatencyTracer {
+
+    enum Stage {
+        PUSH_RECEIVED,       // ZemichatMessagingService accepted the incoming_call
+        NOTIFICATION_POSTED, // ring notification is up
+        CALL_SCREEN_SHOWN,   // IncomingCallActivity drew its first frame
+        ANSWER_TAPPED,       // call screen, notification action or Telecom
+        ANSWER_DELIVERED,    // MainActivity queued the answer for JS
+        JS_RECEIVED          // JS took it (event or getPendingCallAction)
+    }
+
+    private static final int CAPACITY = 256; // Power of two
+    private static final long[] BUCKET_UPPER_MS = {
+            10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, Long.MAX_VALUE
+    };
+    private static final Stage[] STAGES = Stage.values();
+
+    // Changes with every process so JS can tell a fresh ring from an old cursor
+    private static final String BOOT_ID = UUID.randomUUID().toString();
+
+    private static final AtomicLong cursor = new AtomicLong();
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final AtomicReferenceArray<String> callLogIds = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicIntegerArray stages = new AtomicIntegerArray(CAPACITY);
+    private static final AtomicLongArray stamps = new AtomicLongArray(CAPACITY);
+    private static final AtomicLongArray histogram = new AtomicLongArray(STAGES.length * BUCKET_UPPER_MS.length);
+
+    private CallLatencyTracer() {
+    }
+
+    /**
+     * Record that a call reached a stage. Only the first mark per call and
+     * stage counts, so callers need not care whether another path (the
+     * notification action vs. the call screen) got there first.
+     */
+    static void mark(String callLogId, Stage stage) {
+        if (callLogId == null) return;
+        long now = SystemClock.elapsedRealtimeNanos();
+
+        long pushedAt = -1;
+        long end = cursor.get();
+        for (long seq = end - 1; seq >= 0 && seq >= end - CAPACITY; seq--) {
+            int slot = (int) (seq & (CAPACITY - 1));
+            if (sequences.get(slot) != seq + 1 || !callLogId.equals(callLogIds.get(slot))) continue;
+            int recorded = stages.get(slot);
+            if (recorded == stage.ordinal()) return; // Already marked
+            if (recorded == Stage.PUSH_RECEIVED.ordinal()) pushedAt = stamps.get(slot);
+        }
+
+        long seq = cursor.getAndIncrement();
+        int slot = (int) (seq & (CAPACITY - 1));
+        sequences.set(slot, 0); // Being written
+        callLogIds.set(slot, callLogId);
+        stages.set(slot, stage.ordinal());
+        stamps.set(slot, now);
+        sequences.set(slot, seq + 1); // Published
+
+        if (pushedAt >= 0 && stage != Stage.PUSH_RECEIVED) {
+            long ms = (now - pushedAt) / 1_000_000;
+            histogram.incrementAndGet(stage.ordinal() * BUCKET_UPPER_MS.length + bucketFor(ms));
+        }
+    }
+
+    /**
+     * Events recorded after cursor `since` (still in the ring) plus the
+     * per-stage histograms. Pass the returned cursor back next time; it
+     * resets to 0 together with bootId when the process restarts.
+     */
+    static JSONObject snapshot(long since, boolean resetHistograms) throws JSONException {
+        long end = cursor.get();
+        long wallOffsetMs = System.currentTimeMillis() - SystemClock.elapsedRealtime();
+
+        JSONArray events = new JSONArray();
+        for (long seq = Math.max(since, end - CAPACITY); seq < end; seq++) {
+            int slot = (int) (seq & (CAPACITY - 1));
+            if (sequences.get(slot) != seq + 1) continue;
+            String callLogId = callLogIds.get(slot);
+            int stage = stages.get(slot);
+            long stamp = stamps.get(slot);
+            if (sequences.get(slot) != seq + 1) continue; // Overwritten while reading
+
+            JSONObject event = new JSONObject();
+            event.put("callLogId", callLogId);
+            event.put("stage", STAGES[stage].name());
+            event.put("at", wallOffsetMs + stamp / 1_000_000);
+            events.put(event);
+        }
+
+        JSONObject histograms = new JSONObject();
+        for (Stage stage : STAGES) {
+            if (stage == Stage.PUSH_RECEIVED) continue;
+            long[] counts = new long[BUCKET_UPPER_MS.length];
+            long total = 0;
+            for (int b = 0; b < counts.length; b++) {
+                int index = stage.ordinal() * BUCKET_UPPER_MS.length + b;
+                counts[b] = resetHistograms ? histogram.getAndSet(index, 0) : histogram.get(index);
+                total += counts[b];
+            }
+            if (total == 0) continue;
+
+            JSONArray buckets = new JSONArray();
+            for (int b = 0; b < counts.length; b++) {
+                JSONObject bucket = new JSONObject();
+                bucket.put("le", BUCKET_UPPER_MS[b] == Long.MAX_VALUE ? -1 : BUCKET_UPPER_MS[b]);
+                bucket.put("count", counts[b]);
+                buckets.put(bucket);
+            }
+            JSONObject h = new JSONObject();
+            h.put("count", total);
+            h.put("p50", percentile(counts, total, 0.50));
+            h.put("p90", percentile(counts, total, 0.90));
+            h.put("p99", percentile(counts, total, 0.99));
+            h.put("buckets", buckets);
+            histograms.put(stage.name(), h);
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("bootId", BOOT_ID);
+        result.put("cursor", end);
+        result.put("events", events);
+        result.put("histograms", histograms);
+        return result;
+    }
+
+    private static int bucketFor(long ms) {
+        for (int b = 0; b < BUCKET_UPPER_MS.length; b++) {
+            if (ms <= BUCKET_UPPER_MS[b]) return b;
+        }
+        return BUCKET_UPPER_MS.length - 1;
+    }
+
+    /**
+     * Upper bound (ms) of the bucket holding the q-th quantile. The overflow
+     * bucket reports the last finite bound.
+     */
+    static long percentile(long[] counts, long total, double q) {
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int b = 0; b < counts.length; b++) {
+            seen += counts[b];
+            if (seen >= rank) {
+                return BUCKET_UPPER_MS[b] == Long.MAX_VALUE ? BUCKET_UPPER_MS[b - 1] : BUCKET_UPPER_MS[b];
+            }
+        }
+        return BUCKET_UPPER_MS[BUCKET_UPPER_MS.length - 2];
+    }
+}
@@ -1,7 +1,7 @@
 package com.zemichat.app;
 
-import android.app.NotificationManager;
-import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
 
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
@@ -9,41 +9,50 @@ import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONException;
+
 /**
  * Capacitor plugin that bridges native incoming call actions to the JS layer.
- * When the user taps "Answer" on IncomingCallActivity, the call data is stored
- * in a static field. The JS layer polls for it on resume.
+ * When the user taps "Answer" in native UI, the action goes through
+ * CallActionQueue: pushed as a "callAction" event if JS is listening,
+ * otherwise queued for getPendingCallAction() on the next resume.
  */
 @CapacitorPlugin(name = "CallNotification")
 public class CallNotificationPlugin extends Plugin {
 
-    /**
-     * Static field set by IncomingCallActivity when user taps Answer.
-     * The JS layer reads and clears it via getPendingCallAction().
-     */
-    static CallAction pendingCallAction = null;
+    static final String EVENT_CALL_ACTION = "callAction";
+
+    private final CallActionQueue.Listener actionListener = action -> {
+        if (!hasListeners(EVENT_CALL_ACTION)) return false;
+        notifyListeners(EVENT_CALL_ACTION, toJson(action));
+        CallLatencyTracer.mark(action.callLogId, CallLatencyTracer.Stage.JS_RECEIVED);
+        return true;
+    };
+
+    @Override
+    public void load() {
+        super.load();
+        CallActionQueue.setListener(actionListener);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        super.handleOnDestroy();
+        CallActionQueue.clearListener(actionListener);
+    }
 
     /**
-     * Check if there's a pending call action (e.g., user answered from native screen).
+     * Take the oldest pending call action (e.g., user answered from native screen).
      * Returns the call data or null.
      */
     @PluginMethod
     public void getPendingCallAction(PluginCall call) {
         JSObject result = new JSObject();
 
-        if (pendingCallAction != null) {
-            CallAction action = pendingCallAction;
-            pendingCallAction = null;
-
-            JSObject data = new JSObject();
-            data.put("action", action.action);
-            data.put("callLogId", action.callLogId);
-            data.put("chatId", action.chatId);
-            data.put("callType", action.callType);
-            data.put("callerId", action.callerId);
-            data.put("callerName", action.callerName);
-            data.put("callerAvatar", action.callerAvatar);
-            result.put("data", data);
+        CallAction action = CallActionQueue.poll();
+        if (action != null) {
+            result.put("data", toJson(action));
+            CallLatencyTracer.mark(action.callLogId, CallLatencyTracer.Stage.JS_RECEIVED);
         } else {
             result.put("data", JSObject.NULL);
         }
@@ -53,15 +62,122 @@ public class CallNotificationPlugin extends Plugin {
 
     /**
      * Dismiss the incoming call notification (e.g., when answered from within the app).
+     * Optional callLogId targets one call; without it every ringing call is cleared.
      */
     @PluginMethod
     public void dismissCallNotification(PluginCall call) {
-        NotificationManager nm =
-                (NotificationManager) getContext().getSystemService(Context.NOTIFICATION_SERVICE);
-        nm.cancel(9001); // CALL_NOTIFICATION_ID
+        String callLogId = call.getString("callLogId");
+        if (callLogId != null) {
+            IncomingCallNotifier.cancel(getContext(), callLogId);
+        } else {
+            IncomingCallNotifier.cancelAll(getContext());
+        }
+        call.resolve();
+    }
+
+    /**
+     * The user opened a chat: remove its message notification and the lines
+     * MessageNotifier keeps for it, so they don't resurface with the next
+     * message.
+     */
+    @PluginMethod
+    public void clearChatNotification(PluginCall call) {
+        String chatId = call.getString("chatId");
+        if (chatId == null) {
+            call.reject("chatId is required");
+            return;
+        }
+        MessageNotifier.clear(getContext(), chatId);
+        call.resolve();
+    }
+
+    /**
+     * Mirror the signed-in Supabase session to native code so calls can be
+     * declined from the notification without starting the WebView.
+     * Called by JS on every auth state change. Also restarts native outbox
+     * delivery, which stops while the mirrored token is expired.
+     */
+    @PluginMethod
+    public void setBackendSession(PluginCall call) {
+        String url = call.getString("url");
+        String anonKey = call.getString("anonKey");
+        String accessToken = call.getString("accessToken");
+        String userId = call.getString("userId");
+        if (url == null || anonKey == null || accessToken == null || userId == null) {
+            call.reject("url, anonKey, accessToken and userId are required");
+            return;
+        }
+        Long expiresAt = call.getLong("expiresAt");
+        BackendSession.save(getContext(), new BackendSession(
+                url, anonKey, accessToken, userId, expiresAt != null ? expiresAt : 0));
+        OutboxWorker.schedule(getContext());
+        call.resolve();
+    }
+
+    /**
+     * Forget the mirrored session (sign-out), along with the previous
+     * account's cached media.
+     */
+    @PluginMethod
+    public void clearBackendSession(PluginCall call) {
+        BackendSession.clear(getContext());
+        getBridge().execute(() -> MediaCache.get(getContext()).clear());
+        call.resolve();
+    }
+
+    /**
+     * JS has the call media up. Telecom keeps the call active from here on.
+     */
+    @PluginMethod
+    public void reportCallConnected(PluginCall call) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            ZemichatConnection connection = ZemichatConnectionService.find(call.getString("callLogId"));
+            if (connection != null) connection.markConnected();
+        }
+        call.resolve();
+    }
+
+    /**
+     * The call ended in JS (hang-up, remote end, answered elsewhere…).
+     * Disconnects the Telecom call so Android releases audio focus.
+     */
+    @PluginMethod
+    public void reportCallEnded(PluginCall call) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            CallTelecom.end(call.getString("callLogId"), CallTelecom.causeForReason(call.getString("reason")));
+        }
         call.resolve();
     }
 
+    /**
+     * Call latency events recorded since `since` (the cursor from the previous
+     * call) and per-stage histograms. resetHistograms clears the histograms
+     * after reading, for delta uploads.
+     */
+    @PluginMethod
+    public void getCallLatencyMetrics(PluginCall call) {
+        Long since = call.getLong("since");
+        try {
+            call.resolve(JSObject.fromJSONObject(CallLatencyTracer.snapshot(
+                    since != null ? since : 0, call.getBoolean("resetHistograms", false))));
+        } catch (JSONException e) {
+            call.reject("Could not serialise latency metrics", e);
+        }
+    }
+
+    private static JSObject toJson(CallAction action) {
+        JSObject data = new JSObject();
+        data.put("action", action.action);
+        data.put("callLogId", action.callLogId);
+        data.put("chatId", action.chatId);
+        data.put("callType", action.callType);
+        data.put("callerId", action.callerId);
+        data.put("callerName", action.callerName);
+        data.put("callerAvatar", action.callerAvatar);
+        data.put("timestamp", action.timestamp);
+        return data;
+    }
+
     /**
      * Data class for pending call actions.
      */
@@ -73,6 +189,9 @@ public class CallNotificationPlugin extends Plugin {
         final String callerId;
         final String callerName;
         final String callerAvatar;
+        // Wall clock for JS, monotonic for expiry
+        final long timestamp = System.currentTimeMillis();
+        final long createdAt = SystemClock.elapsedRealtime();
 
         CallAction(String action, String callLogId, String chatId,
                    String callType, String callerId, String callerName, String callerAvatar) {
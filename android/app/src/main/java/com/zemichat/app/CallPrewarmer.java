@@ -0,0 +1,161 @@
+package com.zemichat.app;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebSettings;
+
+import com.getcapacitor.CapConfig;
+import com.getcapacitor.PluginConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Warms the pieces MainActivity needs while an incoming call is ringing.
+ *
+ * Answering from a cold process pays for three things before JS can even
+ * ask for the pending call: loading the WebView (Chromium) provider,
+ * reading index.html and its module chunks out of the APK, and parsing
+ * them. The first two don't need an Activity, so they can overlap the
+ * ~35 s ring instead of the answer:
+ *
+ *  - WebView provider: WebSettings.getDefaultUserAgent() loads and
+ *    initialises Chromium, queued as a main-thread idle task so it never
+ *    delays the ringing UI.
+ *  - Web bundle: index.html and every module script / modulepreload it
+ *    references (vendor, supabase, agora…) are read once on a background
+ *    thread so they sit in the page cache when the bridge requests them.
+ *    Chunks are read from where they will be served: BundleAssetServer's
+ *    extracted copies once they exist, the APK until then.
+ *
+ * The bridge itself is bound to BridgeActivity and can't be created
+ * headless, so JS parse still happens after Answer.
+ *
+ * Opt-in via capacitor.config.ts: plugins.CallNotification.prewarmOnRing.
+ */
+final class CallPrewarmer {
+
+    private static final String TAG = "CallPrewarmer";
+    private static final String CONFIG_PLUGIN = "CallNotification";
+    private static final String CONFIG_KEY = "prewarmOnRing";
+    private static final String WEB_ROOT = "public";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // Module scripts and modulepreload links emitted by Vite. The legacy
+    // (nomodule) bundles are skipped — a modern WebView never loads them.
+    private static final Pattern ASSET_REF = Pattern.compile("(?:src|href)=\"/?(assets/[^\"]+\\.js)\"");
+
+    private static final AtomicBoolean started = new AtomicBoolean(false);
+    private static volatile Boolean enabled;
+
+    private CallPrewarmer() {
+    }
+
+    /**
+     * Start warming if enabled. Safe to call from any thread and more than
+     * once — only the first call per process does any work.
+     */
+    static void start(Context context) {
+        Context app = context.getApplicationContext();
+        if (!isEnabled(app) || !started.compareAndSet(false, true)) return;
+        // Already warm if MainActivity ran in this process
+        if (AppLifecycleTracker.isAppInForeground()) return;
+
+        new Handler(Looper.getMainLooper()).post(() ->
+                Looper.myQueue().addIdleHandler(() -> {
+                    try {
+                        WebSettings.getDefaultUserAgent(app);
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "WebView pre-warm failed", e);
+                    }
+                    return false;
+                }));
+
+        Thread reader = new Thread(() -> warmBundle(app), "CallPrewarm");
+        reader.setPriority(Thread.MIN_PRIORITY);
+        reader.start();
+    }
+
+    private static boolean isEnabled(Context context) {
+        Boolean cached = enabled;
+        if (cached == null) {
+            try {
+                PluginConfig config = CapConfig.loadDefault(context).getPluginConfiguration(CONFIG_PLUGIN);
+                cached = config.getBoolean(CONFIG_KEY, false);
+            } catch (RuntimeException e) {
+                cached = false;
+            }
+            enabled = cached;
+        }
+        return cached;
+    }
+
+    private static void warmBundle(Context context) {
+        AssetManager assets = context.getAssets();
+        File extracted = BundleAssetServer.get(context).extractedDir();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try {
+            // Always from the APK: Capacitor serves it, bridge script injected
+            String html = readAsString(assets, WEB_ROOT + "/index.html");
+            Set<String> chunks = new LinkedHashSet<>();
+            Matcher m = ASSET_REF.matcher(html);
+            while (m.find()) {
+                if (!m.group(1).contains("-legacy")) chunks.add(m.group(1));
+            }
+            for (String chunk : chunks) {
+                File file = extracted != null
+                        ? new File(extracted, chunk.substring(chunk.indexOf('/') + 1))
+                        : null;
+                if (file != null && file.isFile()) {
+                    drain(file, buffer);
+                } else {
+                    drain(assets, WEB_ROOT + "/" + chunk, buffer);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Bundle pre-warm failed", e);
+        }
+    }
+
+    private static String readAsString(AssetManager assets, String path) throws IOException {
+        try (InputStream in = assets.open(path)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void drain(AssetManager assets, String path, byte[] buffer) {
+        try (InputStream in = assets.open(path)) {
+            while (in.read(buffer) != -1) {
+                // Only the read matters — it pulls the bytes into the page cache
+            }
+        } catch (IOException e) {
+            // Chunk renamed or missing; the next one may still help
+        }
+    }
+
+    private static void drain(File file, byte[] buffer) {
+        try (InputStream in = new FileInputStream(file)) {
+            while (in.read(buffer) != -1) {
+                // Same page-cache pull, for the pages BundleAssetServer maps
+            }
+        } catch (IOException e) {
+            // Removed by a newer extraction; nothing to warm
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.zemichat.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Idempotency window for call pushes, surviving process death.
+ *
+ * FCM is at-least-once and unordered: incoming_call can arrive twice, or
+ * after the matching call_cancelled, or minutes late after the device was
+ * in Doze. CallRegistry catches repeats within one process; this catches
+ * them across processes, which matters because each push may well be
+ * delivered to a freshly started one.
+ *
+ * The last SLOTS pushes live in a fixed ring of SharedPreferences keys.
+ * Accepting a push rewrites a single slot, and the ring is read into
+ * plain arrays once per process, so the per-push cost is a short linear
+ * scan with no allocation beyond the slot string being written.
+ */
+final class CallPushDeduper {
+
+    static final String TYPE_INCOMING = "incoming_call";
+    static final String TYPE_CANCELLED = "call_cancelled";
+
+    private static final int SLOTS = 32;
+    private static final long WINDOW_MS = 10 * 60_000;
+    // A ring older than this is pointless: the caller's own 30 s timeout
+    // and the 60 s signal expiry have both passed. FCM enforces it with the
+    // ring's 60 s TTL; here sentAt is compared with the device clock, which
+    // can be minutes off, so the local cutoff only catches rings that are
+    // late by far more than any plausible skew.
+    static final long MAX_RING_AGE_MS = 60_000;
+    static final long CLOCK_SKEW_TOLERANCE_MS = 15 * 60_000;
+
+    private static final String PREFS = "call_push_dedup";
+    private static final String KEY_HEAD = "head";
+    private static final String KEY_SLOT = "s";
+    private static final char SEP = '|';
+
+    private static final String[] callLogIds = new String[SLOTS];
+    private static final String[] types = new String[SLOTS];
+    private static final long[] receivedAt = new long[SLOTS];
+    private static int head;
+    private static boolean loaded;
+
+    private CallPushDeduper() {
+    }
+
+    /**
+     * Decide whether to act on a call push, and record it if so.
+     *
+     * @param sentAt server send time (epoch ms) from the push, or 0 if absent
+     * @return false for a duplicate, a ring for a call already cancelled,
+     *         or a ring that is clearly too old to answer
+     */
+    static synchronized boolean accept(Context context, String type, String callLogId, long sentAt) {
+        if (callLogId == null) return true; // Nothing to key on
+        long now = System.currentTimeMillis();
+        SharedPreferences prefs = prefs(context);
+        load(prefs);
+
+        boolean ring = TYPE_INCOMING.equals(type);
+        if (ring && sentAt > 0 && now - sentAt > MAX_RING_AGE_MS + CLOCK_SKEW_TOLERANCE_MS) return false;
+
+        long cutoff = now - WINDOW_MS;
+        for (int i = 0; i < SLOTS; i++) {
+            if (receivedAt[i] < cutoff || !callLogId.equals(callLogIds[i])) continue;
+            if (type.equals(types[i])) return false; // Duplicate delivery
+            if (ring && TYPE_CANCELLED.equals(types[i])) return false; // Ring after cancel
+        }
+
+        record(prefs, type, callLogId, now);
+        return true;
+    }
+
+    /**
+     * Parse the optional sentAt field of a call push.
+     */
+    static long parseSentAt(String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void record(SharedPreferences prefs, String type, String callLogId, long now) {
+        int slot = head;
+        callLogIds[slot] = callLogId;
+        types[slot] = type;
+        receivedAt[slot] = now;
+        head = (slot + 1) % SLOTS;
+
+        prefs.edit()
+                .putString(KEY_SLOT + slot, now + String.valueOf(SEP) + type + SEP + callLogId)
+                .putInt(KEY_HEAD, head)
+                .apply();
+    }
+
+    private static void load(SharedPreferences prefs) {
+        if (loaded) return;
+        loaded = true;
+        head = Math.floorMod(prefs.getInt(KEY_HEAD, 0), SLOTS);
+        for (int i = 0; i < SLOTS; i++) {
+            String entry = prefs.getString(KEY_SLOT + i, null);
+            if (entry == null) continue;
+            int a = entry.indexOf(SEP);
+            int b = a >= 0 ? entry.indexOf(SEP, a + 1) : -1;
+            if (b < 0) continue;
+            try {
+                receivedAt[i] = Long.parseLong(entry.substring(0, a));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            types[i] = entry.substring(a + 1, b);
+            callLogIds[i] = entry.substring(b + 1);
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+}
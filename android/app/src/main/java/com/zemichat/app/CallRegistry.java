@@ -0,0 +1,170 @@
+package com.zemichat.app;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process-wide record of incoming calls, keyed by callLogId.
+ *
+ * Every call gets its own notification id and PendingIntent request codes,
+ * so a second incoming call (or a group call fan-out) no longer overwrites
+ * the first, and a call_cancelled for one call can't dismiss another.
+ *
+ * Each call moves through an explicit state machine:
+ *
+ *   RINGING ──► ANSWERED | DECLINED | CANCELLED | TIMED_OUT
+ *
+ * Only RINGING has outgoing transitions. Terminal entries are kept for a
+ * while so late events for the same call (a duplicate incoming_call push
+ * after the caller hung up, a second Answer tap) are recognised and ignored.
+ *
+ * Notification ids are derived from the callLogId rather than allocated,
+ * so a fresh process — e.g. woken by call_cancelled after the ringing one
+ * was killed — still finds the right notification to cancel.
+ */
+final class CallRegistry {
+
+    enum State {
+        RINGING, ANSWERED, DECLINED, CANCELLED, TIMED_OUT;
+
+        boolean isTerminal() {
+            return this != RINGING;
+        }
+    }
+
+    /** Used when a push carries no callLogId — the id every call had before. */
+    static final int LEGACY_NOTIFICATION_ID = 9001;
+
+    // Matches the notification timeout and IncomingCallActivity's auto-dismiss
+    static final long RING_TIMEOUT_MS = 35_000;
+    // Keep terminal calls long enough to absorb late pushes and taps
+    static final long RETAIN_TERMINAL_MS = 5 * 60_000;
+    private static final int MAX_ENTRIES = 64;
+
+    // Base keeps call ids clear of message notifications and the legacy id
+    private static final int NOTIFICATION_ID_BASE = 0x40000000;
+    private static final int NOTIFICATION_ID_SPAN = 1 << 20;
+    // PendingIntent request codes per call: fullscreen, answer, decline
+    static final int REQUEST_FULL_SCREEN = 0;
+    static final int REQUEST_ANSWER = 1;
+    static final int REQUEST_DECLINE = 2;
+    private static final int REQUEST_CODES_PER_CALL = 4;
+
+    private static final Map<String, Entry> calls = new LinkedHashMap<>();
+
+    private CallRegistry() {
+    }
+
+    /**
+     * Register an incoming call. Returns false if the call is already known
+     * — ringing, or ended in any way — so it must not ring (again).
+     */
+    static synchronized boolean ring(String callLogId) {
+        if (callLogId == null) return true;
+        prune();
+        if (calls.containsKey(callLogId)) return false;
+        calls.put(callLogId, new Entry(State.RINGING));
+        return true;
+    }
+
+    /**
+     * Move a ringing call to a terminal state. Returns true if the transition
+     * happened — the call was RINGING, or unknown to this process (it rang in
+     * a process that has since died). Returns false when the call already
+     * ended, in which case the caller should skip its side effects.
+     *
+     * An unknown call is recorded in the new state, so a late incoming_call
+     * for it won't ring.
+     */
+    static synchronized boolean transition(String callLogId, State to) {
+        if (callLogId == null) return true;
+        if (!to.isTerminal()) throw new IllegalArgumentException("Cannot move back to " + to);
+        prune();
+        Entry entry = calls.get(callLogId);
+        if (entry == null) {
+            calls.put(callLogId, new Entry(to));
+            return true;
+        }
+        if (entry.state.isTerminal()) return false;
+        entry.state = to;
+        entry.changedAt = SystemClock.elapsedRealtime();
+        return true;
+    }
+
+    /**
+     * Current state, or null if the call is unknown.
+     */
+    static synchronized State state(String callLogId) {
+        Entry entry = callLogId != null ? calls.get(callLogId) : null;
+        return entry != null ? entry.state : null;
+    }
+
+    /**
+     * elapsedRealtime at which a still-ringing call started ringing in this
+     * process, or 0 if it isn't ringing here.
+     */
+    static synchronized long ringingSince(String callLogId) {
+        Entry entry = callLogId != null ? calls.get(callLogId) : null;
+        return entry != null && entry.state == State.RINGING ? entry.changedAt : 0;
+    }
+
+    /**
+     * callLogIds of all calls currently ringing, oldest first.
+     */
+    static synchronized List<String> ringing() {
+        prune();
+        List<String> ids = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : calls.entrySet()) {
+            if (e.getValue().state == State.RINGING) ids.add(e.getKey());
+        }
+        return ids;
+    }
+
+    static int notificationId(String callLogId) {
+        if (callLogId == null) return LEGACY_NOTIFICATION_ID;
+        return NOTIFICATION_ID_BASE + Math.floorMod(callLogId.hashCode(), NOTIFICATION_ID_SPAN);
+    }
+
+    /**
+     * A PendingIntent request code unique to this call and purpose.
+     */
+    static int requestCode(String callLogId, int purpose) {
+        if (callLogId == null) return purpose; // Legacy codes 0, 1, 2
+        return Math.floorMod(callLogId.hashCode(), NOTIFICATION_ID_SPAN) * REQUEST_CODES_PER_CALL
+                + REQUEST_CODES_PER_CALL + purpose;
+    }
+
+    private static void prune() {
+        long now = SystemClock.elapsedRealtime();
+        Iterator<Entry> it = calls.values().iterator();
+        while (it.hasNext()) {
+            Entry e = it.next();
+            if (e.state == State.RINGING && e.changedAt < now - RING_TIMEOUT_MS) {
+                // Nobody reported an outcome; the notification is gone by now
+                e.state = State.TIMED_OUT;
+                e.changedAt = now;
+            } else if (e.state.isTerminal() && e.changedAt < now - RETAIN_TERMINAL_MS) {
+                it.remove();
+            }
+        }
+        // Bound memory under a burst: drop the oldest, ended calls first
+        it = calls.values().iterator();
+        while (calls.size() >= MAX_ENTRIES && it.hasNext()) {
+            if (it.next().state.isTerminal()) it.remove();
+        }
+    }
+
+    private static final class Entry {
+        State state;
+        long changedAt = SystemClock.elapsedRealtime();
+
+        Entry(State state) {
+            this.state = state;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.zemichat.app;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.telecom.DisconnectCause;
+import android.telecom.PhoneAccount;
+import android.telecom.PhoneAccountHandle;
+import android.telecom.TelecomManager;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Self-managed Telecom integration for incoming calls (Android 8+).
+ *
+ * Reporting a call to Telecom gives it system-level call priority: Android
+ * routes audio and focus for it, Bluetooth headsets and watches can answer
+ * it, and OEM battery managers leave a process with a live call alone.
+ * The ringing UI is still ours — ZemichatConnection posts the usual
+ * notification / IncomingCallActivity when Telecom asks it to.
+ *
+ * Every entry point falls back cleanly: if Telecom is unavailable or
+ * refuses the call, the caller posts the notification directly as before.
+ */
+final class CallTelecom {
+
+    private static final String TAG = "CallTelecom";
+    private static final String PHONE_ACCOUNT_ID = "zemichat_calls";
+    private static final String EXTRA_CALL_DATA = "com.zemichat.app.CALL_DATA";
+
+    private static volatile boolean accountRegistered = false;
+
+    private CallTelecom() {
+    }
+
+    /**
+     * Hand an incoming call push to Telecom. Returns false if the call was
+     * not accepted — then the caller must show the notification itself.
+     */
+    static boolean reportIncomingCall(Context context, Map<String, String> data) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return false;
+        try {
+            TelecomManager tm = (TelecomManager) context.getSystemService(Context.TELECOM_SERVICE);
+            if (tm == null) return false;
+            PhoneAccountHandle handle = registerPhoneAccount(context, tm);
+            if (!tm.isIncomingCallPermitted(handle)) return false; // e.g. already in a call
+
+            Bundle callData = new Bundle();
+            for (Map.Entry<String, String> e : data.entrySet()) {
+                callData.putString(e.getKey(), e.getValue());
+            }
+            Bundle extras = new Bundle();
+            extras.putBundle(TelecomManager.EXTRA_INCOMING_CALL_EXTRAS, wrap(callData));
+            tm.addNewIncomingCall(handle, extras);
+            return true;
+        } catch (SecurityException | IllegalArgumentException | UnsupportedOperationException e) {
+            Log.w(TAG, "Telecom rejected incoming call, falling back to notification", e);
+            return false;
+        }
+    }
+
+    /**
+     * The user answered from our own UI (notification or IncomingCallActivity).
+     */
+    static void answered(String callLogId) {
+        ZemichatConnection connection = ZemichatConnectionService.find(callLogId);
+        if (connection != null) connection.markActive();
+    }
+
+    /**
+     * End the Telecom call for callLogId, if there is one.
+     *
+     * @param cause a DisconnectCause code — REJECTED, MISSED, REMOTE, LOCAL…
+     */
+    static void end(String callLogId, int cause) {
+        ZemichatConnection connection = ZemichatConnectionService.find(callLogId);
+        if (connection != null) connection.disconnect(cause);
+    }
+
+    /**
+     * Map a JS reportCallEnded reason to a DisconnectCause code.
+     */
+    static int causeForReason(String reason) {
+        if (reason == null) return DisconnectCause.REMOTE;
+        switch (reason) {
+            case "answeredElsewhere":
+                return DisconnectCause.ANSWERED_ELSEWHERE;
+            case "declinedElsewhere":
+                return DisconnectCause.REJECTED;
+            case "failed":
+                return DisconnectCause.ERROR;
+            default:
+                return DisconnectCause.REMOTE;
+        }
+    }
+
+    static Map<String, String> callData(Bundle extras) {
+        Map<String, String> data = new HashMap<>();
+        Bundle callData = extras != null ? extras.getBundle(EXTRA_CALL_DATA) : null;
+        if (callData != null) {
+            for (String key : callData.keySet()) {
+                data.put(key, callData.getString(key));
+            }
+        }
+        return data;
+    }
+
+    private static Bundle wrap(Bundle callData) {
+        Bundle b = new Bundle();
+        b.putBundle(EXTRA_CALL_DATA, callData);
+        return b;
+    }
+
+    private static PhoneAccountHandle registerPhoneAccount(Context context, TelecomManager tm) {
+        PhoneAccountHandle handle = new PhoneAccountHandle(
+                new ComponentName(context, ZemichatConnectionService.class), PHONE_ACCOUNT_ID);
+        if (!accountRegistered) {
+            PhoneAccount account = PhoneAccount.builder(handle, "Zemichat")
+                    .setCapabilities(PhoneAccount.CAPABILITY_SELF_MANAGED)
+                    .addSupportedUriScheme(ZemichatConnection.URI_SCHEME)
+                    .build();
+            tm.registerPhoneAccount(account);
+            accountRegistered = true;
+        }
+        return handle;
+    }
+
+    static Uri addressFor(String callerId) {
+        return Uri.fromParts(ZemichatConnection.URI_SCHEME, callerId != null ? callerId : "unknown", null);
+    }
+}
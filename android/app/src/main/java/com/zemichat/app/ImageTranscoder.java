@@ -0,0 +1,132 @@
+package com.zemichat.app;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.ExifInterface;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Downscales and recompresses shared photos before they are uploaded.
+ *
+ * Camera JPEGs arrive at 8–15 MB. Decoding happens in two steps so the full
+ * resolution bitmap is never allocated: a bounds-only pass reads the
+ * dimensions, then the real decode uses a power-of-two inSampleSize plus
+ * decoder-side density scaling to land on the target edge in one bitmap.
+ *
+ * Re-encoding drops every EXIF tag (GPS, device, timestamps). Only the
+ * orientation is copied back so the photo still displays upright.
+ */
+class ImageTranscoder {
+
+    static final int DEFAULT_MAX_EDGE = 2048;
+    static final int DEFAULT_QUALITY = 82;
+    static final int MAX_EDGE_LIMIT = 8192;
+
+    /**
+     * Transcode src into dst as JPEG. Returns null when transcoding would not
+     * help — the image already fits and is not bigger than its re-encode would
+     * be, the re-encode came out no smaller than the original, or it is a
+     * format we must not flatten (GIF animation, PNG alpha). dst is deleted
+     * whenever null is returned after encoding.
+     */
+    static Result transcode(File src, String mimeType, File dst, int maxEdge, int quality) throws IOException {
+        if ("image/gif".equals(mimeType) || "image/png".equals(mimeType)) return null;
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(src.getPath(), bounds);
+        int width = bounds.outWidth;
+        int height = bounds.outHeight;
+        if (width <= 0 || height <= 0) return null; // Not decodable
+
+        int longEdge = Math.max(width, height);
+        if (longEdge <= maxEdge && src.length() <= estimateJpegBytes(width, height)) {
+            return null; // Already small
+        }
+
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inSampleSize = computeSampleSize(longEdge, maxEdge);
+        int sampledEdge = longEdge / opts.inSampleSize;
+        if (sampledEdge > maxEdge) {
+            // Finish the scale inside the decoder instead of a second bitmap
+            opts.inScaled = true;
+            opts.inDensity = sampledEdge;
+            opts.inTargetDensity = maxEdge;
+        }
+
+        Bitmap bitmap = BitmapFactory.decodeFile(src.getPath(), opts);
+        if (bitmap == null) return null;
+        int outWidth = bitmap.getWidth();
+        int outHeight = bitmap.getHeight();
+
+        try (FileOutputStream out = new FileOutputStream(dst)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("JPEG encode failed");
+            }
+        } catch (IOException e) {
+            dst.delete();
+            throw e;
+        } finally {
+            bitmap.recycle();
+        }
+
+        if (dst.length() >= src.length()) {
+            dst.delete();
+            return null; // Re-encoding didn't pay off — send the original
+        }
+
+        copyOrientation(src, dst);
+        return new Result(dst, outWidth, outHeight, dst.length());
+    }
+
+    /**
+     * Largest power of two that keeps the sampled long edge at or above maxEdge,
+     * so the final scale is always a downscale.
+     */
+    static int computeSampleSize(int longEdge, int maxEdge) {
+        if (maxEdge <= 0) throw new IllegalArgumentException("maxEdge must be positive: " + maxEdge);
+        int sample = 1;
+        while (longEdge / (sample * 2) >= maxEdge) {
+            sample *= 2;
+        }
+        return sample;
+    }
+
+    // Rough upper bound for a quality ~85 JPEG: ~1.5 bits per pixel
+    private static long estimateJpegBytes(int width, int height) {
+        return (long) width * height * 3 / 16;
+    }
+
+    private static void copyOrientation(File src, File dst) {
+        try {
+            String orientation = new ExifInterface(src.getPath())
+                    .getAttribute(ExifInterface.TAG_ORIENTATION);
+            if (orientation == null
+                    || String.valueOf(ExifInterface.ORIENTATION_NORMAL).equals(orientation)) {
+                return;
+            }
+            ExifInterface out = new ExifInterface(dst.getPath());
+            out.setAttribute(ExifInterface.TAG_ORIENTATION, orientation);
+            out.saveAttributes();
+        } catch (IOException e) {
+            // Non-JPEG source or unreadable EXIF — the pixels are still fine
+        }
+    }
+
+    static class Result {
+        final File file;
+        final int width;
+        final int height;
+        final long size;
+
+        Result(File file, int width, int height, long size) {
+            this.file = file;
+            this.width = width;
+            this.height = height;
+            this.size = size;
+        }
+    }
+}
@@ -1,39 +1,45 @@
 package com.zemichat.app;
 
-import android.app.NotificationManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
-import android.graphics.Color;
-import android.graphics.Typeface;
-import android.graphics.drawable.GradientDrawable;
+import android.app.Activity;
+import android.graphics.drawable.BitmapDrawable;
 import android.media.AudioAttributes;
 import android.media.AudioManager;
 import android.media.Ringtone;
 import android.media.RingtoneManager;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.os.VibratorManager;
-import android.view.Gravity;
+import android.telecom.DisconnectCause;
+import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
-import android.widget.LinearLayout;
 import android.widget.TextView;
 
-import androidx.appcompat.app.AppCompatActivity;
-
 /**
  * Full-screen incoming call activity shown over other apps and the lock screen.
  * Displays caller info with Answer and Decline buttons, plays ringtone and vibrates.
+ *
+ * This sits between the full-screen intent and the first frame, often in a
+ * cold process over the lock screen, so it is kept deliberately light: a
+ * plain framework Activity (AppCompat's delegate and view inflater buy
+ * nothing here), a flat XML layout whose drawables come from the resource
+ * cache, and the call gradient as the window background so even the
+ * starting window looks right.
  */
-public class IncomingCallActivity extends AppCompatActivity {
+public class IncomingCallActivity extends Activity {
 
+    private static final String TAG = "IncomingCallActivity";
     private static final long AUTO_DISMISS_MS = 35_000;
 
     private String callLogId;
@@ -43,6 +49,7 @@ public class IncomingCallActivity extends AppCompatActivity {
     private String callerName;
     private String callerAvatar;
 
+    private TextView avatarView;
     private Ringtone ringtone;
     private Vibrator vibrator;
     private Handler handler;
@@ -51,6 +58,9 @@ public class IncomingCallActivity extends AppCompatActivity {
     private final BroadcastReceiver dismissReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
+            // Another call's dismissal must not close this one
+            String target = intent.getStringExtra("callLogId");
+            if (target != null && !target.equals(callLogId)) return;
             stopRinging();
             finish();
         }
@@ -58,8 +68,18 @@ public class IncomingCallActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        long createdAt = SystemClock.elapsedRealtime();
         super.onCreate(savedInstanceState);
+        Trace.beginSection("IncomingCallActivity.onCreate");
+        try {
+            setUp();
+        } finally {
+            Trace.endSection();
+        }
+        if (!isFinishing()) traceFirstFrame(createdAt);
+    }
 
+    private void setUp() {
         // Show over lock screen and turn screen on
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
             setShowWhenLocked(true);
@@ -82,8 +102,15 @@ public class IncomingCallActivity extends AppCompatActivity {
         if (callerName == null) callerName = "Unknown";
         if (callType == null) callType = "voice";
 
-        // Build UI
-        setContentView(buildUI());
+        // Full-screen intent fired after the call was already cancelled
+        CallRegistry.State state = CallRegistry.state(callLogId);
+        if (state != null && state.isTerminal()) {
+            finish();
+            return;
+        }
+
+        setContentView(R.layout.activity_incoming_call);
+        bindUI();
 
         // Cancel the heads-up notification so its system ringtone stops
         // before our own starts — otherwise we'd double-ring on devices
@@ -93,8 +120,16 @@ public class IncomingCallActivity extends AppCompatActivity {
         // Start ringing and vibrating
         startRinging();
 
+        // Swap the initial for the photo once it's loaded (usually a cache
+        // hit — the notification asked for it first)
+        AvatarLoader.load(this, callerAvatar, bitmap -> {
+            if (bitmap == null || isFinishing()) return;
+            avatarView.setText(null);
+            avatarView.setBackground(new BitmapDrawable(getResources(), AvatarLoader.circle(bitmap)));
+        });
+
         // Listen for dismiss broadcast (from decline button or cancel push)
-        IntentFilter filter = new IntentFilter("com.zemichat.app.DISMISS_CALL");
+        IntentFilter filter = new IntentFilter(IncomingCallNotifier.ACTION_DISMISS_CALL);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
             registerReceiver(dismissReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
         } else {
@@ -105,11 +140,30 @@ public class IncomingCallActivity extends AppCompatActivity {
         handler = new Handler(Looper.getMainLooper());
         autoDismissRunnable = () -> {
             stopRinging();
+            if (CallRegistry.transition(callLogId, CallRegistry.State.TIMED_OUT)) {
+                endTelecomCall(DisconnectCause.MISSED);
+            }
             finish();
         };
         handler.postDelayed(autoDismissRunnable, AUTO_DISMISS_MS);
     }
 
+    /**
+     * A second call's full-screen intent while this one is on screen. The
+     * current call keeps the screen while it rings; the new one stays as its
+     * own heads-up notification. If the current call is already over, show
+     * the new one instead.
+     */
+    @Override
+    protected void onNewIntent(Intent intent) {
+        super.onNewIntent(intent);
+        String newCallLogId = intent.getStringExtra("callLogId");
+        if (newCallLogId == null || newCallLogId.equals(callLogId)) return;
+        if (CallRegistry.state(callLogId) == CallRegistry.State.RINGING) return;
+        setIntent(intent);
+        recreate();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
@@ -125,142 +179,51 @@ public class IncomingCallActivity extends AppCompatActivity {
     }
 
     // ============================================================
-    // UI (Programmatic — no XML layout needed)
+    // UI
     // ============================================================
 
-    private View buildUI() {
-        // Root layout with gradient background
-        LinearLayout root = new LinearLayout(this);
-        root.setOrientation(LinearLayout.VERTICAL);
-        root.setGravity(Gravity.CENTER);
-        root.setPadding(48, 128, 48, 128);
-
-        GradientDrawable gradient = new GradientDrawable(
-                GradientDrawable.Orientation.TOP_BOTTOM,
-                new int[]{ 0xFF1a73e8, 0xFF121212 }
-        );
-        root.setBackground(gradient);
-
-        // Avatar circle with initial
-        TextView avatarView = new TextView(this);
-        avatarView.setWidth(dpToPx(120));
-        avatarView.setHeight(dpToPx(120));
-        avatarView.setGravity(Gravity.CENTER);
+    private void bindUI() {
+        avatarView = findViewById(R.id.call_avatar);
         avatarView.setText(callerName.substring(0, 1).toUpperCase());
-        avatarView.setTextSize(48);
-        avatarView.setTextColor(Color.parseColor("#1a73e8"));
-        avatarView.setTypeface(Typeface.DEFAULT_BOLD);
 
-        GradientDrawable avatarBg = new GradientDrawable();
-        avatarBg.setShape(GradientDrawable.OVAL);
-        avatarBg.setColor(Color.WHITE);
-        avatarView.setBackground(avatarBg);
-
-        LinearLayout.LayoutParams avatarParams = new LinearLayout.LayoutParams(
-                dpToPx(120), dpToPx(120)
-        );
-        avatarParams.gravity = Gravity.CENTER;
-        root.addView(avatarView, avatarParams);
-
-        // Spacer
-        root.addView(createSpacer(32));
-
-        // Caller name
-        TextView nameView = new TextView(this);
-        nameView.setText(callerName);
-        nameView.setTextSize(28);
-        nameView.setTextColor(Color.WHITE);
-        nameView.setTypeface(Typeface.DEFAULT_BOLD);
-        nameView.setGravity(Gravity.CENTER);
-        root.addView(nameView, wrapParams());
-
-        // Spacer
-        root.addView(createSpacer(8));
-
-        // Call type label
-        String callLabel = "video".equals(callType)
-                ? "Incoming video call"
-                : "Incoming voice call";
-        TextView typeView = new TextView(this);
-        typeView.setText(callLabel);
-        typeView.setTextSize(16);
-        typeView.setTextColor(Color.parseColor("#CCFFFFFF"));
-        typeView.setGravity(Gravity.CENTER);
-        root.addView(typeView, wrapParams());
-
-        // Large spacer before buttons
-        root.addView(createSpacer(96));
-
-        // Button row
-        LinearLayout buttonRow = new LinearLayout(this);
-        buttonRow.setOrientation(LinearLayout.HORIZONTAL);
-        buttonRow.setGravity(Gravity.CENTER);
-
-        // Decline column
-        LinearLayout declineCol = createButtonColumn(
-                "\u2716", // ✖
-                "Decline",
-                0xFFEF4444, // Red
-                v -> onDecline()
-        );
-
-        // Spacer between buttons
-        View buttonSpacer = new View(this);
-        LinearLayout.LayoutParams spacerParams = new LinearLayout.LayoutParams(dpToPx(80), 0);
-        buttonRow.addView(declineCol);
-        buttonRow.addView(buttonSpacer, spacerParams);
-
-        // Answer column
-        String answerIcon = "video".equals(callType) ? "\uD83D\uDCF9" : "\u260E"; // 📹 or ☎
-        LinearLayout answerCol = createButtonColumn(
-                answerIcon,
-                "Answer",
-                0xFF22C55E, // Green
-                v -> onAnswer()
-        );
-        buttonRow.addView(answerCol);
+        ((TextView) findViewById(R.id.call_name)).setText(callerName);
 
-        root.addView(buttonRow, wrapParams());
+        boolean video = "video".equals(callType);
+        ((TextView) findViewById(R.id.call_type)).setText(
+                video ? R.string.call_incoming_video : R.string.call_incoming_voice);
 
-        return root;
+        TextView answer = findViewById(R.id.call_answer);
+        if (video) {
+            answer.setCompoundDrawablesWithIntrinsicBounds(
+                    null, getDrawable(R.drawable.call_button_answer_video), null, null);
+        }
+        answer.setOnClickListener(v -> onAnswer());
+        findViewById(R.id.call_decline).setOnClickListener(v -> onDecline());
     }
 
-    private LinearLayout createButtonColumn(String icon, String label, int color, View.OnClickListener listener) {
-        LinearLayout col = new LinearLayout(this);
-        col.setOrientation(LinearLayout.VERTICAL);
-        col.setGravity(Gravity.CENTER);
-
-        // Circle button
-        TextView btn = new TextView(this);
-        btn.setWidth(dpToPx(64));
-        btn.setHeight(dpToPx(64));
-        btn.setGravity(Gravity.CENTER);
-        btn.setText(icon);
-        btn.setTextSize(24);
-        btn.setTextColor(Color.WHITE);
-
-        GradientDrawable btnBg = new GradientDrawable();
-        btnBg.setShape(GradientDrawable.OVAL);
-        btnBg.setColor(color);
-        btn.setBackground(btnBg);
-        btn.setOnClickListener(listener);
-
-        LinearLayout.LayoutParams btnParams = new LinearLayout.LayoutParams(
-                dpToPx(64), dpToPx(64)
-        );
-        btnParams.gravity = Gravity.CENTER;
-        col.addView(btn, btnParams);
-
-        // Label
-        col.addView(createSpacer(8));
-        TextView labelView = new TextView(this);
-        labelView.setText(label);
-        labelView.setTextSize(14);
-        labelView.setTextColor(Color.parseColor("#CCFFFFFF"));
-        labelView.setGravity(Gravity.CENTER);
-        col.addView(labelView, wrapParams());
-
-        return col;
+    /**
+     * Log time to first frame — from onCreate and from the moment the push
+     * registered the call — and report the activity as fully drawn so it
+     * also shows up in the system's launch metrics.
+     */
+    private void traceFirstFrame(long createdAt) {
+        View decor = getWindow().getDecorView();
+        decor.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                decor.getViewTreeObserver().removeOnPreDrawListener(this);
+                // Runs after this frame has been handed to the renderer
+                decor.post(() -> {
+                    long now = SystemClock.elapsedRealtime();
+                    long ringingSince = CallRegistry.ringingSince(callLogId);
+                    Log.i(TAG, "First frame " + (now - createdAt) + " ms after onCreate"
+                            + (ringingSince > 0 ? ", " + (now - ringingSince) + " ms after push" : ""));
+                    CallLatencyTracer.mark(callLogId, CallLatencyTracer.Stage.CALL_SCREEN_SHOWN);
+                    reportFullyDrawn();
+                });
+                return true;
+            }
+        });
     }
 
     // ============================================================
@@ -268,17 +231,29 @@ public class IncomingCallActivity extends AppCompatActivity {
     // ============================================================
 
     private void onAnswer() {
+        CallLatencyTracer.mark(callLogId, CallLatencyTracer.Stage.ANSWER_TAPPED);
         stopRinging();
         dismissNotification();
+        if (!CallRegistry.transition(callLogId, CallRegistry.State.ANSWERED)) {
+            // Cancelled or timed out while the button was being tapped
+            finish();
+            return;
+        }
 
-        // Store call data for the Capacitor plugin to pick up
-        CallNotificationPlugin.pendingCallAction = new CallNotificationPlugin.CallAction(
-                "answer", callLogId, chatId, callType, callerId, callerName, callerAvatar
-        );
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            CallTelecom.answered(callLogId);
+        }
 
         // Launch main app
+        // MainActivity.handleCallIntent queues the action for the JS layer
         Intent mainIntent = new Intent(this, MainActivity.class);
         mainIntent.setAction("ANSWER_CALL");
+        mainIntent.putExtra("callLogId", callLogId);
+        mainIntent.putExtra("chatId", chatId);
+        mainIntent.putExtra("callType", callType);
+        mainIntent.putExtra("callerId", callerId);
+        mainIntent.putExtra("callerName", callerName);
+        mainIntent.putExtra("callerAvatar", callerAvatar);
         mainIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
         startActivity(mainIntent);
         finish();
@@ -287,8 +262,11 @@ public class IncomingCallActivity extends AppCompatActivity {
     private void onDecline() {
         stopRinging();
         dismissNotification();
+        if (CallRegistry.transition(callLogId, CallRegistry.State.DECLINED)) {
+            endTelecomCall(DisconnectCause.REJECTED);
+            CallDeclineSender.send(this, callLogId, chatId, null);
+        }
         finish();
-        // Caller's 30s timeout will mark as missed. This is acceptable for v1.
     }
 
     // ============================================================
@@ -298,8 +276,7 @@ public class IncomingCallActivity extends AppCompatActivity {
     private void startRinging() {
         // Play default ringtone
         try {
-            Uri ringtoneUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_RINGTONE);
-            ringtone = RingtoneManager.getRingtone(getApplicationContext(), ringtoneUri);
+            ringtone = RingtoneManager.getRingtone(getApplicationContext(), NotificationChannels.ringtoneUri());
             if (ringtone != null) {
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
                     ringtone.setLooping(true);
@@ -348,33 +325,13 @@ public class IncomingCallActivity extends AppCompatActivity {
         }
     }
 
-    private void dismissNotification() {
-        NotificationManager nm =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        nm.cancel(9001); // CALL_NOTIFICATION_ID
-    }
-
-    // ============================================================
-    // HELPERS
-    // ============================================================
-
-    private int dpToPx(int dp) {
-        return (int) (dp * getResources().getDisplayMetrics().density + 0.5f);
-    }
-
-    private View createSpacer(int heightDp) {
-        View v = new View(this);
-        LinearLayout.LayoutParams p = new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.MATCH_PARENT, dpToPx(heightDp)
-        );
-        v.setLayoutParams(p);
-        return v;
+    private void endTelecomCall(int cause) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            CallTelecom.end(callLogId, cause);
+        }
     }
 
-    private LinearLayout.LayoutParams wrapParams() {
-        return new LinearLayout.LayoutParams(
-                LinearLayout.LayoutParams.WRAP_CONTENT,
-                LinearLayout.LayoutParams.WRAP_CONTENT
-        );
+    private void dismissNotification() {
+        IncomingCallNotifier.cancel(this, callLogId);
     }
 }
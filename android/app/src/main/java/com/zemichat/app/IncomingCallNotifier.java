@@ -0,0 +1,156 @@
+package com.zemichat.app;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.service.notification.StatusBarNotification;
+
+import androidx.core.app.NotificationCompat;
+
+import java.util.Map;
+
+/**
+ * Builds and posts the incoming call notification: heads-up with Answer and
+ * Decline when the device is unlocked, full-screen IncomingCallActivity when
+ * it is locked. Shared by the plain FCM path and the Telecom path, where
+ * ZemichatConnection posts it from onShowIncomingCallUi.
+ *
+ * The caller's avatar is the large icon when AvatarLoader already has it.
+ * Otherwise the notification goes up without one and is re-posted silently
+ * once the download lands — the ring is never held for it. The re-post only
+ * happens while the notification is still showing: IncomingCallActivity
+ * cancels it while the call keeps ringing, and posting it again then would
+ * be a new notification, with a second ringtone and full-screen intent.
+ */
+final class IncomingCallNotifier {
+
+    static final String ACTION_DISMISS_CALL = "com.zemichat.app.DISMISS_CALL";
+
+    private IncomingCallNotifier() {
+    }
+
+    static void show(Context context, Map<String, String> data) {
+        String callerName = data.get("callerName");
+        String callType = data.get("callType");
+        String callLogId = data.get("callLogId");
+        String chatId = data.get("chatId");
+        String callerId = data.get("callerId");
+        String callerAvatar = data.get("callerAvatar");
+
+        if (callerName == null) callerName = "Unknown";
+        if (callType == null) callType = "voice";
+
+        // Full-screen intent → IncomingCallActivity
+        Intent fullScreenIntent = new Intent(context, IncomingCallActivity.class);
+        fullScreenIntent.putExtra("callerName", callerName);
+        fullScreenIntent.putExtra("callType", callType);
+        fullScreenIntent.putExtra("callLogId", callLogId);
+        fullScreenIntent.putExtra("chatId", chatId);
+        fullScreenIntent.putExtra("callerId", callerId);
+        fullScreenIntent.putExtra("callerAvatar", callerAvatar);
+        fullScreenIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+
+        PendingIntent fullScreenPendingIntent = PendingIntent.getActivity(
+                context, CallRegistry.requestCode(callLogId, CallRegistry.REQUEST_FULL_SCREEN), fullScreenIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        // Answer action → opens MainActivity with call data
+        Intent answerIntent = new Intent(context, MainActivity.class);
+        answerIntent.setAction("ANSWER_CALL");
+        answerIntent.putExtra("callLogId", callLogId);
+        answerIntent.putExtra("chatId", chatId);
+        answerIntent.putExtra("callType", callType);
+        answerIntent.putExtra("callerId", callerId);
+        answerIntent.putExtra("callerName", callerName);
+        answerIntent.putExtra("callerAvatar", callerAvatar);
+        answerIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+
+        PendingIntent answerPendingIntent = PendingIntent.getActivity(
+                context, CallRegistry.requestCode(callLogId, CallRegistry.REQUEST_ANSWER), answerIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        // Decline action → dismiss notification and signal the caller
+        Intent declineIntent = new Intent(context, CallDismissReceiver.class);
+        declineIntent.setAction("DECLINE_CALL");
+        declineIntent.putExtra("callLogId", callLogId);
+        declineIntent.putExtra("chatId", chatId);
+
+        PendingIntent declinePendingIntent = PendingIntent.getBroadcast(
+                context, CallRegistry.requestCode(callLogId, CallRegistry.REQUEST_DECLINE), declineIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
+        );
+
+        String callTypeLabel = "video".equals(callType) ? "Video call" : "Voice call";
+        String contentText = callTypeLabel + " from " + callerName;
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, NotificationChannels.CHANNEL_ID_CALLS)
+                .setSmallIcon(android.R.drawable.sym_call_incoming)
+                .setContentTitle(callerName)
+                .setContentText(contentText)
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setCategory(NotificationCompat.CATEGORY_CALL)
+                .setOngoing(true)
+                .setAutoCancel(false)
+                .setTimeoutAfter(CallRegistry.RING_TIMEOUT_MS) // Auto-dismiss after 35 seconds
+                .setOnlyAlertOnce(true) // The avatar update must not ring again
+                .setFullScreenIntent(fullScreenPendingIntent, true)
+                .addAction(android.R.drawable.ic_menu_close_clear_cancel, "Decline", declinePendingIntent)
+                .addAction(android.R.drawable.sym_action_call, "Answer", answerPendingIntent);
+
+        Bitmap avatar = AvatarLoader.peek(context, callerAvatar);
+        if (avatar != null) {
+            builder.setLargeIcon(AvatarLoader.circle(avatar));
+        } else if (AvatarLoader.cacheKey(callerAvatar) != null) {
+            Context app = context.getApplicationContext();
+            AvatarLoader.load(app, callerAvatar, bitmap -> {
+                if (bitmap != null && CallRegistry.state(callLogId) == CallRegistry.State.RINGING
+                        && isPosted(app, callLogId)) {
+                    show(app, data);
+                }
+            });
+        }
+
+        NotificationChannels.notificationManager(context).notify(
+                CallRegistry.notificationId(callLogId), builder.build());
+        CallLatencyTracer.mark(callLogId, CallLatencyTracer.Stage.NOTIFICATION_POSTED);
+    }
+
+    /**
+     * Cancel the notification for one call, and tell IncomingCallActivity to
+     * close if it is showing that call.
+     */
+    static void dismiss(Context context, String callLogId) {
+        cancel(context, callLogId);
+        Intent closeIntent = new Intent(ACTION_DISMISS_CALL).setPackage(context.getPackageName());
+        closeIntent.putExtra("callLogId", callLogId);
+        context.sendBroadcast(closeIntent);
+    }
+
+    /**
+     * Cancel the notification for one call only.
+     */
+    static void cancel(Context context, String callLogId) {
+        NotificationChannels.notificationManager(context).cancel(CallRegistry.notificationId(callLogId));
+    }
+
+    private static boolean isPosted(Context context, String callLogId) {
+        int id = CallRegistry.notificationId(callLogId);
+        for (StatusBarNotification sbn : NotificationChannels.notificationManager(context).getActiveNotifications()) {
+            if (sbn.getId() == id && sbn.getTag() == null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cancel every ringing call's notification (plus the legacy id).
+     */
+    static void cancelAll(Context context) {
+        for (String callLogId : CallRegistry.ringing()) {
+            cancel(context, callLogId);
+        }
+        cancel(context, null);
+    }
+}
@@ -1,8 +1,7 @@
 package com.zemichat.app;
 
-import android.app.NotificationManager;
-import android.content.Context;
 import android.content.Intent;
+import android.os.Build;
 import android.os.Bundle;
 import com.getcapacitor.BridgeActivity;
 
@@ -12,6 +11,7 @@ public class MainActivity extends BridgeActivity {
         // Register plugins before super.onCreate() — Bridge dispatches initial intent in load()
         registerPlugin(ShareTargetPlugin.class);
         registerPlugin(CallNotificationPlugin.class);
+        registerPlugin(NativeOutboxPlugin.class);
         super.onCreate(savedInstanceState);
 
         // Replace the default Capacitor WebChromeClient with one that
@@ -23,7 +23,13 @@ public class MainActivity extends BridgeActivity {
             new ZemichatWebChromeClient(getBridge())
         );
 
-        handleCallIntent(getIntent());
+        // Serve Supabase Storage media from a native disk cache so re-signed
+        // URLs for the same image don't hit the network again
+        getBridge().setWebViewClient(new ZemichatWebViewClient(getBridge()));
+
+        // A recreate (rotation, process restore) hands back the launch intent;
+        // an ANSWER_CALL in it was handled the first time round
+        if (savedInstanceState == null) handleCallIntent(getIntent());
     }
 
     @Override
@@ -33,24 +39,37 @@ public class MainActivity extends BridgeActivity {
     }
 
     /**
-     * When the user taps "Answer" on the heads-up notification (device unlocked),
-     * the intent arrives here instead of IncomingCallActivity. Populate the
-     * pending call action so the JS layer can detect and auto-answer.
+     * Every native Answer — heads-up notification, IncomingCallActivity or a
+     * Telecom device — arrives here as ANSWER_CALL. Hand the call action to
+     * the JS layer so it can auto-answer.
      */
     private void handleCallIntent(Intent intent) {
         if (intent != null && "ANSWER_CALL".equals(intent.getAction())) {
-            CallNotificationPlugin.pendingCallAction = new CallNotificationPlugin.CallAction(
+            String callLogId = intent.getStringExtra("callLogId");
+            // Consumed — a later recreate mustn't see it again
+            setIntent(new Intent(Intent.ACTION_MAIN));
+            // No-op unless this came straight from the notification's action
+            CallLatencyTracer.mark(callLogId, CallLatencyTracer.Stage.ANSWER_TAPPED);
+            IncomingCallNotifier.cancel(this, callLogId);
+
+            // IncomingCallActivity may have moved it to ANSWERED already;
+            // anything else means the call ended before the tap landed.
+            CallRegistry.transition(callLogId, CallRegistry.State.ANSWERED);
+            if (callLogId != null && CallRegistry.state(callLogId) != CallRegistry.State.ANSWERED) return;
+
+            CallActionQueue.offer(new CallNotificationPlugin.CallAction(
                 "answer",
-                intent.getStringExtra("callLogId"),
+                callLogId,
                 intent.getStringExtra("chatId"),
                 intent.getStringExtra("callType"),
                 intent.getStringExtra("callerId"),
                 intent.getStringExtra("callerName"),
                 intent.getStringExtra("callerAvatar")
-            );
-            // Dismiss the incoming call notification
-            NotificationManager nm = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-            nm.cancel(9001);
+            ));
+            CallLatencyTracer.mark(callLogId, CallLatencyTracer.Stage.ANSWER_DELIVERED);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                CallTelecom.answered(callLogId);
+            }
         }
     }
 }
@@ -0,0 +1,380 @@
+package com.zemichat.app;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Disk cache for Supabase Storage media requested by the WebView.
+ *
+ * Chat images and avatars are rendered through signed URLs, and every fresh
+ * signature is a new URL — a guaranteed miss for the WebView's own HTTP
+ * cache. Here the key is the object (host, path, transform parameters) with
+ * the token dropped, so an image seen once is served from disk however many
+ * times it is re-signed.
+ *
+ * Hits are answered with a FileInputStream straight off the cache file. A
+ * miss is fetched here and streamed to the WebView through a tee that writes
+ * the same bytes to a temp file; the file is only promoted into the cache
+ * once the body has been read to the end, so an abandoned or failed load
+ * never leaves a truncated entry.
+ *
+ * Chat media paths are timestamped and never rewritten, so they are kept
+ * until evicted. Avatars are uploaded with upsert to a fixed path and are
+ * only trusted for MUTABLE_TTL_MS. Range requests (video seeking) and
+ * anything but GET go to the network untouched.
+ *
+ * No Cache-Control is sent back: responses from shouldInterceptRequest
+ * never enter Chromium's HTTP cache, and this cache owns freshness anyway.
+ */
+final class MediaCache {
+
+    private static final String TAG = "MediaCache";
+    private static final String DIR_NAME = "media";
+    private static final String TMP_PREFIX = "tmp-";
+    private static final long MAX_CACHE_BYTES = 200L * 1024 * 1024;
+    private static final long MAX_ENTRY_BYTES = 20L * 1024 * 1024;
+    private static final long MUTABLE_TTL_MS = 60 * 60 * 1000L;
+    private static final long STALE_TMP_MS = 60 * 60 * 1000L;
+    private static final int CONNECT_TIMEOUT_MS = 10_000;
+    private static final int READ_TIMEOUT_MS = 20_000;
+
+    private static final String[] CACHEABLE_PREFIXES = {
+            "/storage/v1/object/sign/",
+            "/storage/v1/object/public/",
+            "/storage/v1/render/image/sign/",
+            "/storage/v1/render/image/public/",
+    };
+
+    private static volatile MediaCache instance;
+
+    private final File dir;
+    private long approximateSize = -1;
+
+    private MediaCache(Context context) {
+        this.dir = new File(context.getCacheDir(), DIR_NAME);
+    }
+
+    static MediaCache get(Context context) {
+        MediaCache cache = instance;
+        if (cache == null) {
+            synchronized (MediaCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    cache = new MediaCache(context.getApplicationContext());
+                    instance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * A response for the WebView, or null to let it load the URL itself.
+     * Called on a WebView IO thread, so blocking on the network is fine.
+     */
+    WebResourceResponse intercept(WebResourceRequest request) {
+        if (!"GET".equals(request.getMethod())) return null;
+        if (hasHeader(request.getRequestHeaders(), "Range")) return null;
+        Uri uri = request.getUrl();
+        String key = cacheKey(uri);
+        if (key == null) return null;
+
+        String name = SharedFileStore.toHex(SharedFileStore.newSha256().digest(key.getBytes(StandardCharsets.UTF_8)));
+        File body = new File(dir, name);
+        File meta = new File(dir, name + ".meta");
+
+        Entry entry = Entry.read(meta);
+        if (entry != null && body.isFile() && entry.expiresAt > System.currentTimeMillis()) {
+            try {
+                body.setLastModified(System.currentTimeMillis());
+                return response(entry.contentType, body.length(), new FileInputStream(body));
+            } catch (IOException e) {
+                // Evicted under us — fetch it again
+            }
+        }
+
+        try {
+            return fetch(uri, request.getRequestHeaders(), body, meta, isMutable(uri));
+        } catch (IOException e) {
+            Log.w(TAG, "Fetch failed, handing back to the WebView", e);
+            return null;
+        }
+    }
+
+    /**
+     * Drop everything, e.g. on sign-out so the next account can't see the
+     * previous one's media.
+     */
+    synchronized void clear() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        approximateSize = 0;
+    }
+
+    private WebResourceResponse fetch(Uri uri, Map<String, String> requestHeaders, File body, File meta,
+                                      boolean mutable) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(uri.toString()).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        // /render/image/ negotiates WebP on the WebView's Accept; without it
+        // HttpURLConnection's default gets the original format back
+        String accept = header(requestHeaders, "Accept");
+        if (accept != null) conn.setRequestProperty("Accept", accept);
+        int status = conn.getResponseCode();
+        if (status != HttpURLConnection.HTTP_OK) {
+            // Let the WebView see the real error (expired token, 404…)
+            conn.disconnect();
+            return null;
+        }
+
+        String contentType = conn.getContentType();
+        long length = conn.getContentLengthLong();
+        InputStream network = conn.getInputStream();
+        if (length > MAX_ENTRY_BYTES || !dir.isDirectory() && !dir.mkdirs()) {
+            return response(contentType, length, network);
+        }
+
+        File tmp = new File(dir, TMP_PREFIX + UUID.randomUUID());
+        long expiresAt = mutable ? System.currentTimeMillis() + MUTABLE_TTL_MS : Long.MAX_VALUE;
+        InputStream tee = new TeeInputStream(network, new FileOutputStream(tmp), tmp, () -> {
+            if (tmp.length() > MAX_ENTRY_BYTES || length >= 0 && tmp.length() != length) {
+                tmp.delete();
+                return;
+            }
+            new Entry(contentType, expiresAt).write(meta);
+            if (tmp.renameTo(body)) {
+                added(body.length());
+            } else {
+                tmp.delete();
+            }
+        });
+        return response(contentType, length, tee);
+    }
+
+    private synchronized void added(long bytes) {
+        if (approximateSize < 0) approximateSize = directorySize();
+        approximateSize += bytes;
+        if (approximateSize > MAX_CACHE_BYTES) trim();
+    }
+
+    /**
+     * Evict least-recently-used bodies (and their .meta) down to 3/4 of the
+     * limit, so a busy scroll doesn't trim on every insert. Temp files from
+     * loads a dead process never finished go too.
+     */
+    private void trim() {
+        File[] temps = dir.listFiles((d, n) -> n.startsWith(TMP_PREFIX));
+        long cutoff = System.currentTimeMillis() - STALE_TMP_MS;
+        if (temps != null) {
+            for (File f : temps) {
+                if (f.lastModified() < cutoff) f.delete(); // Left by a dead process
+            }
+        }
+        File[] files = dir.listFiles((d, n) -> !n.endsWith(".meta") && !n.startsWith(TMP_PREFIX));
+        if (files == null) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        long total = directorySize();
+        for (File f : files) {
+            if (total <= MAX_CACHE_BYTES * 3 / 4) break;
+            long length = f.length();
+            if (f.delete()) {
+                new File(dir, f.getName() + ".meta").delete();
+                total -= length;
+            }
+        }
+        approximateSize = total;
+    }
+
+    private long directorySize() {
+        File[] files = dir.listFiles();
+        long total = 0;
+        if (files != null) {
+            for (File f : files) total += f.length();
+        }
+        return total;
+    }
+
+    private static WebResourceResponse response(String contentType, long length, InputStream data) {
+        String mimeType = contentType;
+        int semicolon = mimeType != null ? mimeType.indexOf(';') : -1;
+        if (semicolon >= 0) mimeType = mimeType.substring(0, semicolon).trim();
+        if (mimeType == null || mimeType.isEmpty()) mimeType = "application/octet-stream";
+
+        Map<String, String> headers = new HashMap<>();
+        // fetch() from https://localhost (image download) needs CORS, as the
+        // storage API's own response would have had
+        headers.put("Access-Control-Allow-Origin", "*");
+        if (length >= 0) headers.put("Content-Length", String.valueOf(length));
+        return new WebResourceResponse(mimeType, null, 200, "OK", headers, data);
+    }
+
+    /**
+     * host + path + the query minus its token, with parameters sorted so
+     * the same transform always maps to the same key. Null if the URL is
+     * not Supabase Storage.
+     */
+    static String cacheKey(Uri uri) {
+        if (!"https".equals(uri.getScheme()) || uri.getHost() == null) return null;
+        String path = uri.getPath();
+        if (path == null || !isStoragePath(path)) return null;
+
+        List<String> params = new ArrayList<>();
+        for (String name : uri.getQueryParameterNames()) {
+            if ("token".equals(name)) continue;
+            for (String value : uri.getQueryParameters(name)) params.add(name + "=" + value);
+        }
+        Collections.sort(params);
+        StringBuilder key = new StringBuilder(uri.getHost()).append(path);
+        for (String p : params) key.append('&').append(p);
+        return key.toString();
+    }
+
+    private static boolean isStoragePath(String path) {
+        for (String prefix : CACHEABLE_PREFIXES) {
+            if (path.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    // Avatars: their own bucket, or the avatars/ folder of chat-media
+    private static boolean isMutable(Uri uri) {
+        String path = uri.getPath();
+        return path != null && (path.contains("/avatars/") || path.endsWith("/avatars"));
+    }
+
+    private static boolean hasHeader(Map<String, String> headers, String name) {
+        return header(headers, name) != null;
+    }
+
+    private static String header(Map<String, String> headers, String name) {
+        if (headers == null) return null;
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey())) return header.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Content type and expiry, stored next to each body as two lines.
+     */
+    private static final class Entry {
+        final String contentType;
+        final long expiresAt;
+
+        Entry(String contentType, long expiresAt) {
+            this.contentType = contentType;
+            this.expiresAt = expiresAt;
+        }
+
+        static Entry read(File meta) {
+            if (!meta.isFile()) return null;
+            byte[] bytes = new byte[(int) Math.min(meta.length(), 1024)];
+            try (FileInputStream in = new FileInputStream(meta)) {
+                int n = in.read(bytes);
+                if (n <= 0) return null;
+                String[] lines = new String(bytes, 0, n, StandardCharsets.UTF_8).split("\n", 2);
+                if (lines.length < 2) return null;
+                return new Entry(lines[0], Long.parseLong(lines[1].trim()));
+            } catch (IOException | NumberFormatException e) {
+                return null;
+            }
+        }
+
+        void write(File meta) {
+            try (FileOutputStream out = new FileOutputStream(meta)) {
+                out.write(((contentType != null ? contentType : "") + "\n" + expiresAt)
+                        .getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                meta.delete();
+            }
+        }
+    }
+
+    /**
+     * Passes the network body through to the WebView while copying it to
+     * file. onComplete runs only if the stream was read to EOF.
+     */
+    private static final class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+        private final File tmp;
+        private final Runnable onComplete;
+        private boolean copyFailed;
+        private boolean finished;
+
+        TeeInputStream(InputStream in, OutputStream copy, File tmp, Runnable onComplete) {
+            super(in);
+            this.copy = copy;
+            this.tmp = tmp;
+            this.onComplete = onComplete;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                finish(true);
+            } else if (!copyFailed) {
+                try {
+                    copy.write(b, off, n);
+                } catch (IOException e) {
+                    copyFailed = true; // Keep serving the WebView regardless
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                finish(false);
+            }
+        }
+
+        private void finish(boolean eof) {
+            if (finished) return;
+            finished = true;
+            try {
+                copy.close();
+            } catch (IOException e) {
+                copyFailed = true;
+            }
+            if (eof && !copyFailed) {
+                onComplete.run();
+            } else {
+                tmp.delete();
+            }
+        }
+    }
+}
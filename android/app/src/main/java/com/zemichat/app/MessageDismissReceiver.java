@@ -0,0 +1,22 @@
+package com.zemichat.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * A chat notification was swiped away (or cleared with the rest). Drops the
+ * chat's state in MessageNotifier so the dismissed lines don't come back
+ * with its next message.
+ */
+public class MessageDismissReceiver extends BroadcastReceiver {
+
+    static final String ACTION_DISMISSED = "com.zemichat.app.MESSAGE_DISMISSED";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_DISMISSED.equals(intent.getAction())) return;
+        String chatId = intent.getStringExtra("chatId");
+        if (chatId != null) MessageNotifier.clear(context, chatId);
+    }
+}
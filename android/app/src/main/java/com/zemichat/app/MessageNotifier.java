@@ -0,0 +1,391 @@
+package com.zemichat.app;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.Person;
+import androidx.core.app.RemoteInput;
+import androidx.core.graphics.drawable.IconCompat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Renders chat message pushes natively: one MessagingStyle notification per
+ * chat, grouped under a summary, with an inline reply action.
+ *
+ * FCM's automatic display gave one notification per message, so a busy
+ * group chat filled the shade. Here each chat's notification is updated in
+ * place with its last MAX_MESSAGES lines; earlier lines are recovered from
+ * the posted notification itself, so nothing is lost when the process dies
+ * between pushes.
+ *
+ * Bursts are coalesced: the first message of a chat is posted at once, and
+ * anything arriving within COALESCE_MS of the last post is held and flushed
+ * in one update, silently. That also keeps us under Android's notification
+ * update rate limit, which otherwise drops updates outright.
+ *
+ * Senders get their avatar as the Person icon. Unlike a ring, a message can
+ * afford to wait briefly for it: up to AVATAR_WAIT_MS on the FCM thread,
+ * after which the line is posted with the default icon.
+ */
+final class MessageNotifier {
+
+    static final String GROUP_KEY = "com.zemichat.app.MESSAGES";
+    static final String KEY_REPLY_TEXT = "reply_text";
+
+    private static final int CHAT_NOTIFICATION_ID = 1;
+    private static final int SUMMARY_NOTIFICATION_ID = 0x20000000;
+    private static final int MAX_MESSAGES = 8;
+    private static final long COALESCE_MS = 1_500;
+    private static final int MAX_SEEN_IDS = 64;
+    private static final long AVATAR_WAIT_MS = 1_000;
+    // Marks an inline reply's line with its NativeOutbox id until delivered
+    private static final String EXTRA_OUTBOX_ID = "com.zemichat.app.OUTBOX_ID";
+
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static final Map<String, ChatState> chats = new HashMap<>();
+    // FCM redelivers occasionally; the message id is the idempotency key
+    private static final LinkedHashSet<String> seenMessageIds = new LinkedHashSet<>();
+
+    private MessageNotifier() {
+    }
+
+    /**
+     * Handle a data-only new_message push.
+     */
+    static void onMessage(Context context, Map<String, String> data) {
+        String chatId = data.get("chatId");
+        if (chatId == null) return;
+        Context app = context.getApplicationContext();
+
+        IncomingMessage message = new IncomingMessage(
+                data.get("messageId"),
+                data.get("senderId"),
+                orDefault(data.get("senderName"), app.getString(R.string.message_sender_unknown)),
+                orDefault(data.get("body"), app.getString(R.string.message_body_default)),
+                CallPushDeduper.parseSentAt(data.get("sentAt")),
+                AvatarLoader.get(app, data.get("senderAvatar"), AVATAR_WAIT_MS));
+        boolean isGroup = "true".equals(data.get("isGroup"));
+        String chatName = data.get("chatName");
+
+        synchronized (MessageNotifier.class) {
+            if (message.id != null && !seenMessageIds.add(message.id)) return;
+            if (seenMessageIds.size() > MAX_SEEN_IDS) {
+                seenMessageIds.remove(seenMessageIds.iterator().next());
+            }
+
+            ChatState chat = chats.get(chatId);
+            if (chat == null) {
+                chat = new ChatState();
+                chats.put(chatId, chat);
+            }
+            chat.isGroup = isGroup;
+            chat.chatName = chatName;
+            chat.pending.add(message);
+
+            long now = SystemClock.elapsedRealtime();
+            if (chat.flushScheduled) return;
+            long wait = chat.lastPostedAt + COALESCE_MS - now;
+            if (chat.lastPostedAt == 0 || wait <= 0) {
+                flush(app, chatId, chat, false);
+            } else {
+                chat.flushScheduled = true;
+                handler.postDelayed(() -> {
+                    synchronized (MessageNotifier.class) {
+                        chat.flushScheduled = false;
+                        flush(app, chatId, chat, true);
+                    }
+                }, wait);
+            }
+        }
+    }
+
+    /**
+     * Append the user's own inline reply to the chat notification, marked
+     * as sending until OutboxWorker reports back through onReplyDelivered
+     * or onReplyFailed. The line carries outboxId, which is how those find
+     * it again — two identical replies are still two lines.
+     */
+    static synchronized void onReplyQueued(Context context, String chatId, String outboxId, String text) {
+        Context app = context.getApplicationContext();
+        ChatState chat = chats.get(chatId);
+        if (chat == null) {
+            chat = new ChatState();
+            chats.put(chatId, chat);
+        }
+        IncomingMessage line = new IncomingMessage(null, null, null,
+                app.getString(R.string.message_reply_sending, text), System.currentTimeMillis(), null);
+        line.outboxId = outboxId;
+        chat.pending.add(line);
+        flush(app, chatId, chat, true);
+    }
+
+    /**
+     * The reply reached the backend: drop its sending mark.
+     */
+    static synchronized void onReplyDelivered(Context context, String chatId, String outboxId, String text) {
+        replaceOwnLine(context.getApplicationContext(), chatId, outboxId, text, null);
+    }
+
+    /**
+     * A reply was rejected for good. Say so in the notification; tapping it
+     * opens the chat to retry.
+     */
+    static synchronized void onReplyFailed(Context context, String chatId, String outboxId, String text) {
+        Context app = context.getApplicationContext();
+        replaceOwnLine(app, chatId, outboxId, app.getString(R.string.message_reply_not_sent, text),
+                app.getString(R.string.message_reply_failed));
+    }
+
+    /**
+     * Replies can't go out until the app has been opened: the mirrored
+     * session has expired, and only JS may refresh it (see BackendSession).
+     * They stay queued and go out as soon as JS syncs a fresh token.
+     */
+    static synchronized void onReplyBlocked(Context context, String chatId) {
+        Context app = context.getApplicationContext();
+        replaceOwnLine(app, chatId, null, null, app.getString(R.string.message_reply_blocked));
+    }
+
+    /**
+     * Remove a chat's notification and forget its lines — when the chat is
+     * opened (CallNotificationPlugin.clearChatNotification) or the
+     * notification is dismissed (MessageDismissReceiver).
+     */
+    static synchronized void clear(Context context, String chatId) {
+        chats.remove(chatId);
+        NotificationManager nm = NotificationChannels.notificationManager(context);
+        nm.cancel(chatId, CHAT_NOTIFICATION_ID);
+        if (countChatNotifications(nm) == 0) nm.cancel(SUMMARY_NOTIFICATION_ID);
+    }
+
+    private static void flush(Context context, String chatId, ChatState chat, boolean silent) {
+        if (chat.pending.isEmpty()) return;
+        NotificationManager nm = NotificationChannels.notificationManager(context);
+
+        NotificationCompat.MessagingStyle style = previousStyle(nm, chatId);
+        if (style == null) style = new NotificationCompat.MessagingStyle(me(context));
+        style.setGroupConversation(chat.isGroup);
+        if (chat.isGroup && chat.chatName != null && !chat.chatName.isEmpty()) {
+            style.setConversationTitle(chat.chatName);
+        }
+
+        for (IncomingMessage m : chat.pending) {
+            Person sender = null;
+            if (m.senderName != null) {
+                Person.Builder person = new Person.Builder().setName(m.senderName).setKey(m.senderId);
+                if (m.senderAvatar != null) person.setIcon(IconCompat.createWithBitmap(m.senderAvatar));
+                sender = person.build();
+            }
+            long when = m.sentAt > 0 ? m.sentAt : System.currentTimeMillis();
+            NotificationCompat.MessagingStyle.Message line =
+                    new NotificationCompat.MessagingStyle.Message(m.body, when, sender);
+            if (m.outboxId != null) line.getExtras().putString(EXTRA_OUTBOX_ID, m.outboxId);
+            style.addMessage(line);
+        }
+        chat.pending.clear();
+        trim(style);
+
+        post(context, nm, chatId, style, silent);
+        chat.lastPostedAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Rewrite the pending reply line for outboxId in the posted notification,
+     * and optionally add a notice line after it. A notice is posted even if
+     * the notification was dismissed, but not repeated if it is already the
+     * last line.
+     */
+    private static void replaceOwnLine(Context context, String chatId, String outboxId, String replacement,
+                                       String notice) {
+        NotificationManager nm = NotificationChannels.notificationManager(context);
+        NotificationCompat.MessagingStyle style = previousStyle(nm, chatId);
+        if (style == null) {
+            if (notice == null) return;
+            style = new NotificationCompat.MessagingStyle(me(context));
+        }
+        List<NotificationCompat.MessagingStyle.Message> messages = style.getMessages();
+
+        boolean changed = false;
+        if (outboxId != null) {
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                NotificationCompat.MessagingStyle.Message m = messages.get(i);
+                if (outboxId.equals(m.getExtras().getString(EXTRA_OUTBOX_ID))) {
+                    messages.set(i, new NotificationCompat.MessagingStyle.Message(
+                            replacement, m.getTimestamp(), (Person) null));
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        if (notice != null) {
+            NotificationCompat.MessagingStyle.Message last = messages.isEmpty() ? null : messages.get(messages.size() - 1);
+            if (last == null || last.getText() == null || !notice.contentEquals(last.getText())) {
+                messages.add(new NotificationCompat.MessagingStyle.Message(
+                        notice, System.currentTimeMillis(), (Person) null));
+                changed = true;
+            }
+        }
+        if (!changed) return;
+        trim(style);
+        post(context, nm, chatId, style, true);
+    }
+
+    private static void post(Context context, NotificationManager nm, String chatId,
+                             NotificationCompat.MessagingStyle style, boolean silent) {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, NotificationChannels.CHANNEL_ID_MESSAGES)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setStyle(style)
+                .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setGroup(GROUP_KEY)
+                .setAutoCancel(true)
+                .setOnlyAlertOnce(silent)
+                .setSilent(silent)
+                .setContentIntent(openChatIntent(context, chatId))
+                .setDeleteIntent(dismissIntent(context, chatId))
+                .addAction(replyAction(context, chatId));
+
+        nm.notify(chatId, CHAT_NOTIFICATION_ID, builder.build());
+        postSummary(context, nm);
+    }
+
+    /**
+     * The MessagingStyle of the chat notification currently in the shade,
+     * if any — lets a new process continue the conversation history.
+     */
+    private static NotificationCompat.MessagingStyle previousStyle(NotificationManager nm, String chatId) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return null;
+        for (StatusBarNotification sbn : nm.getActiveNotifications()) {
+            if (sbn.getId() == CHAT_NOTIFICATION_ID && chatId.equals(sbn.getTag())) {
+                return NotificationCompat.MessagingStyle.extractMessagingStyleFromNotification(sbn.getNotification());
+            }
+        }
+        return null;
+    }
+
+    private static void trim(NotificationCompat.MessagingStyle style) {
+        List<NotificationCompat.MessagingStyle.Message> messages = style.getMessages();
+        if (messages.size() <= MAX_MESSAGES) return;
+        List<NotificationCompat.MessagingStyle.Message> keep =
+                new ArrayList<>(messages.subList(messages.size() - MAX_MESSAGES, messages.size()));
+        messages.clear();
+        messages.addAll(keep);
+    }
+
+    private static void postSummary(Context context, NotificationManager nm) {
+        Notification summary = new NotificationCompat.Builder(context, NotificationChannels.CHANNEL_ID_MESSAGES)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setGroup(GROUP_KEY)
+                .setGroupSummary(true)
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_CHILDREN)
+                .setAutoCancel(true)
+                .build();
+        nm.notify(SUMMARY_NOTIFICATION_ID, summary);
+    }
+
+    private static int countChatNotifications(NotificationManager nm) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) return 0;
+        int count = 0;
+        for (StatusBarNotification sbn : nm.getActiveNotifications()) {
+            if (sbn.getId() == CHAT_NOTIFICATION_ID && sbn.getTag() != null) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Tapping opens the chat the same way FCM's own notifications did: the
+     * extras plus google.message_id make Capacitor's push plugin fire
+     * pushNotificationActionPerformed with the chatId.
+     */
+    private static PendingIntent openChatIntent(Context context, String chatId) {
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.putExtra("google.message_id", "local-" + chatId);
+        intent.putExtra("type", "new_message");
+        intent.putExtra("chatId", chatId);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        return PendingIntent.getActivity(context, chatId.hashCode(), intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private static PendingIntent dismissIntent(Context context, String chatId) {
+        Intent intent = new Intent(context, MessageDismissReceiver.class);
+        intent.setAction(MessageDismissReceiver.ACTION_DISMISSED);
+        intent.putExtra("chatId", chatId);
+        return PendingIntent.getBroadcast(context, chatId.hashCode(), intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    private static NotificationCompat.Action replyAction(Context context, String chatId) {
+        RemoteInput remoteInput = new RemoteInput.Builder(KEY_REPLY_TEXT)
+                .setLabel(context.getString(R.string.message_reply))
+                .build();
+
+        Intent intent = new Intent(context, MessageReplyReceiver.class);
+        intent.setAction(MessageReplyReceiver.ACTION_REPLY);
+        intent.putExtra("chatId", chatId);
+
+        // RemoteInput fills in the intent, so it has to be mutable
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT
+                | (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ? PendingIntent.FLAG_MUTABLE : 0);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, chatId.hashCode(), intent, flags);
+
+        return new NotificationCompat.Action.Builder(android.R.drawable.ic_menu_send,
+                context.getString(R.string.message_reply), pendingIntent)
+                .addRemoteInput(remoteInput)
+                .setSemanticAction(NotificationCompat.Action.SEMANTIC_ACTION_REPLY)
+                .setShowsUserInterface(false)
+                .setAllowGeneratedReplies(true)
+                .build();
+    }
+
+    private static Person me(Context context) {
+        return new Person.Builder().setName(context.getString(R.string.message_self)).setKey("me").build();
+    }
+
+    private static String orDefault(String value, String fallback) {
+        return value != null && !value.isEmpty() ? value : fallback;
+    }
+
+    private static final class ChatState {
+        final List<IncomingMessage> pending = new ArrayList<>();
+        boolean isGroup;
+        String chatName;
+        long lastPostedAt;
+        boolean flushScheduled;
+    }
+
+    private static final class IncomingMessage {
+        final String id;
+        final String senderId;
+        final String senderName; // null for the user's own reply
+        final String body;
+        final long sentAt;
+        final Bitmap senderAvatar; // null until AvatarLoader has it
+        String outboxId; // Set on the user's own pending reply only
+
+        IncomingMessage(String id, String senderId, String senderName, String body, long sentAt,
+                        Bitmap senderAvatar) {
+            this.id = id;
+            this.senderId = senderId;
+            this.senderName = senderName;
+            this.body = body;
+            this.sentAt = sentAt;
+            this.senderAvatar = senderAvatar;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.zemichat.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+
+import androidx.core.app.RemoteInput;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Inline reply from a chat notification, sent without starting the WebView.
+ *
+ * The reply goes into NativeOutbox with a client-generated id — as
+ * message.ts sendMessage does — and OutboxWorker delivers it as soon as
+ * there is network, now or after the device comes back online. The chat
+ * notification shows the reply as sending right away — Android keeps a
+ * spinner on the reply field until it is updated — and the worker marks it
+ * delivered or failed once the backend has answered.
+ */
+public class MessageReplyReceiver extends BroadcastReceiver {
+
+    static final String ACTION_REPLY = "com.zemichat.app.REPLY_MESSAGE";
+
+    // SQLite writes stay off the main thread
+    private static final ExecutorService executor =
+            Executors.newSingleThreadExecutor(r -> new Thread(r, "MessageReply"));
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_REPLY.equals(intent.getAction())) return;
+        Bundle input = RemoteInput.getResultsFromIntent(intent);
+        CharSequence reply = input != null ? input.getCharSequence(MessageNotifier.KEY_REPLY_TEXT) : null;
+        String chatId = intent.getStringExtra("chatId");
+        if (reply == null || chatId == null) return;
+
+        String text = reply.toString().trim();
+        if (text.isEmpty()) return;
+
+        Context app = context.getApplicationContext();
+        PendingResult pendingResult = goAsync();
+        executor.execute(() -> {
+            try {
+                NativeOutbox.Item item = NativeOutbox.get(app).enqueue(null, chatId, "text", text, null, "reply");
+                MessageNotifier.onReplyQueued(app, chatId, item.id, text);
+                OutboxWorker.schedule(app);
+            } finally {
+                pendingResult.finish();
+            }
+        });
+    }
+}
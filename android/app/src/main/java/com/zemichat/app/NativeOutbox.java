@@ -0,0 +1,202 @@
+package com.zemichat.app;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Persistent queue of messages written natively — inline notification
+ * replies and shares made while offline — until OutboxWorker delivers them.
+ *
+ * Same model as the JS outbox (src/services/outbox.ts): a client-generated
+ * id makes every resend idempotent, items are pending → sent | failed, and
+ * sent items linger briefly so JS can reconcile them with what it shows.
+ */
+class NativeOutbox extends SQLiteOpenHelper {
+
+    static final String STATUS_PENDING = "pending";
+    static final String STATUS_SENT = "sent";
+    static final String STATUS_FAILED = "failed";
+
+    static final int MAX_ATTEMPTS = 6;
+    private static final long KEEP_SENT_MS = 24 * 60 * 60 * 1000L;
+
+    private static final String DB_NAME = "native_outbox.db";
+    private static final int DB_VERSION = 1;
+    private static final String TABLE = "outbox";
+
+    private static volatile NativeOutbox instance;
+
+    static NativeOutbox get(Context context) {
+        NativeOutbox db = instance;
+        if (db == null) {
+            synchronized (NativeOutbox.class) {
+                db = instance;
+                if (db == null) {
+                    db = new NativeOutbox(context.getApplicationContext());
+                    instance = db;
+                }
+            }
+        }
+        return db;
+    }
+
+    private NativeOutbox(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + "id TEXT PRIMARY KEY,"
+                + "chat_id TEXT NOT NULL,"
+                + "type TEXT NOT NULL,"
+                + "content TEXT,"
+                + "reply_to_id TEXT,"
+                + "source TEXT,"
+                + "attempts INTEGER NOT NULL DEFAULT 0,"
+                + "status TEXT NOT NULL,"
+                + "created_at INTEGER NOT NULL,"
+                + "updated_at INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX outbox_status ON " + TABLE + "(status, created_at)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // First version
+    }
+
+    /**
+     * Queue a message. Idempotent on id — the same id twice is a no-op.
+     * Returns the item as stored.
+     */
+    Item enqueue(String id, String chatId, String type, String content, String replyToId, String source) {
+        long now = System.currentTimeMillis();
+        Item item = new Item(id != null ? id : UUID.randomUUID().toString(), chatId,
+                type != null ? type : "text", content, replyToId, source, 0, STATUS_PENDING, now);
+
+        ContentValues values = new ContentValues();
+        values.put("id", item.id);
+        values.put("chat_id", item.chatId);
+        values.put("type", item.type);
+        values.put("content", item.content);
+        values.put("reply_to_id", item.replyToId);
+        values.put("source", item.source);
+        values.put("attempts", 0);
+        values.put("status", STATUS_PENDING);
+        values.put("created_at", now);
+        values.put("updated_at", now);
+        getWritableDatabase().insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+        return item;
+    }
+
+    /**
+     * Oldest pending items first, at most limit.
+     */
+    List<Item> pending(int limit) {
+        return query("status = ?", new String[]{STATUS_PENDING}, String.valueOf(limit));
+    }
+
+    /**
+     * Everything still tracked, oldest first.
+     */
+    List<Item> all() {
+        return query(null, null, null);
+    }
+
+    /**
+     * Record an attempt for a batch: sent on success; otherwise pending
+     * again, or failed once MAX_ATTEMPTS is reached or the failure is permanent.
+     * Returns the items that this attempt moved to failed.
+     */
+    List<Item> recordAttempt(List<Item> batch, boolean sent, boolean permanent) {
+        SQLiteDatabase db = getWritableDatabase();
+        long now = System.currentTimeMillis();
+        List<Item> failed = new ArrayList<>();
+        db.beginTransaction();
+        try {
+            for (Item item : batch) {
+                int attempts = item.attempts + 1;
+                String status = sent ? STATUS_SENT
+                        : (permanent || attempts >= MAX_ATTEMPTS) ? STATUS_FAILED : STATUS_PENDING;
+                if (STATUS_FAILED.equals(status)) failed.add(item);
+                ContentValues values = new ContentValues();
+                values.put("attempts", attempts);
+                values.put("status", status);
+                values.put("updated_at", now);
+                db.update(TABLE, values, "id = ?", new String[]{item.id});
+            }
+            // Housekeeping: JS has had a day to reconcile sent items
+            db.delete(TABLE, "status = ? AND updated_at < ?",
+                    new String[]{STATUS_SENT, String.valueOf(now - KEEP_SENT_MS)});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return failed;
+    }
+
+    /**
+     * Drop items JS has taken over or discarded.
+     */
+    int remove(List<String> ids) {
+        SQLiteDatabase db = getWritableDatabase();
+        int removed = 0;
+        db.beginTransaction();
+        try {
+            for (String id : ids) {
+                removed += db.delete(TABLE, "id = ?", new String[]{id});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return removed;
+    }
+
+    private List<Item> query(String selection, String[] args, String limit) {
+        List<Item> items = new ArrayList<>();
+        try (Cursor c = getReadableDatabase().query(TABLE,
+                new String[]{"id", "chat_id", "type", "content", "reply_to_id", "source",
+                        "attempts", "status", "created_at"},
+                selection, args, null, null, "created_at ASC", limit)) {
+            while (c.moveToNext()) {
+                items.add(new Item(c.getString(0), c.getString(1), c.getString(2), c.getString(3),
+                        c.getString(4), c.getString(5), c.getInt(6), c.getString(7), c.getLong(8)));
+            }
+        }
+        return items;
+    }
+
+    static class Item {
+        final String id;
+        final String chatId;
+        final String type;
+        final String content;
+        final String replyToId;
+        /** Where it came from: "reply" or "share". */
+        final String source;
+        final int attempts;
+        final String status;
+        final long createdAt;
+
+        Item(String id, String chatId, String type, String content, String replyToId,
+             String source, int attempts, String status, long createdAt) {
+            this.id = id;
+            this.chatId = chatId;
+            this.type = type;
+            this.content = content;
+            this.replyToId = replyToId;
+            this.source = source;
+            this.attempts = attempts;
+            this.status = status;
+            this.createdAt = createdAt;
+        }
+    }
+}
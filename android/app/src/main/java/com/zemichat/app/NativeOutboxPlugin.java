@@ -0,0 +1,115 @@
+package com.zemichat.app;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JS access to NativeOutbox: queue messages for native delivery (e.g. a
+ * text share while offline), and list / remove items to reconcile them
+ * with the JS message outbox.
+ */
+@CapacitorPlugin(name = "NativeOutbox")
+public class NativeOutboxPlugin extends Plugin {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "NativeOutbox"));
+
+    @Override
+    protected void handleOnDestroy() {
+        super.handleOnDestroy();
+        executor.shutdown();
+    }
+
+    /**
+     * Queue a message: {id?, chatId, content?, type?, replyToId?, source?}.
+     * Resolves with the stored item.
+     */
+    @PluginMethod
+    public void enqueue(PluginCall call) {
+        String chatId = call.getString("chatId");
+        if (chatId == null) {
+            call.reject("chatId is required");
+            return;
+        }
+        executor.execute(() -> {
+            NativeOutbox.Item item = NativeOutbox.get(getContext()).enqueue(
+                    call.getString("id"), chatId, call.getString("type"), call.getString("content"),
+                    call.getString("replyToId"), call.getString("source", "share"));
+            OutboxWorker.schedule(getContext());
+            call.resolve(toJson(item));
+        });
+    }
+
+    /**
+     * Every tracked item, oldest first: {items: [...]}.
+     */
+    @PluginMethod
+    public void list(PluginCall call) {
+        executor.execute(() -> {
+            JSArray items = new JSArray();
+            for (NativeOutbox.Item item : NativeOutbox.get(getContext()).all()) {
+                items.put(toJson(item));
+            }
+            JSObject result = new JSObject();
+            result.put("items", items);
+            call.resolve(result);
+        });
+    }
+
+    /**
+     * Drop items JS has taken over: {ids: [...]}. Resolves with {removed}.
+     */
+    @PluginMethod
+    public void remove(PluginCall call) {
+        JSArray ids = call.getArray("ids");
+        if (ids == null) {
+            call.reject("ids is required");
+            return;
+        }
+        executor.execute(() -> {
+            List<String> list = new ArrayList<>();
+            try {
+                for (int i = 0; i < ids.length(); i++) list.add(ids.getString(i));
+            } catch (JSONException e) {
+                call.reject("ids must be strings");
+                return;
+            }
+            JSObject result = new JSObject();
+            result.put("removed", NativeOutbox.get(getContext()).remove(list));
+            call.resolve(result);
+        });
+    }
+
+    /**
+     * Ask WorkManager to deliver pending items as soon as the network allows.
+     */
+    @PluginMethod
+    public void flush(PluginCall call) {
+        OutboxWorker.schedule(getContext());
+        call.resolve();
+    }
+
+    private static JSObject toJson(NativeOutbox.Item item) {
+        JSObject json = new JSObject();
+        json.put("id", item.id);
+        json.put("chatId", item.chatId);
+        json.put("type", item.type);
+        json.put("content", item.content);
+        json.put("replyToId", item.replyToId);
+        json.put("source", item.source);
+        json.put("attempts", item.attempts);
+        json.put("status", item.status);
+        json.put("createdAt", item.createdAt);
+        return json;
+    }
+}
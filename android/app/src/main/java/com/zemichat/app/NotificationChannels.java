@@ -0,0 +1,136 @@
+package com.zemichat.app;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.media.AudioAttributes;
+import android.media.RingtoneManager;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+
+/**
+ * Notification channels and the system lookups every notification needs.
+ *
+ * Channels are created once per CHANNELS_VERSION from ZemichatApplication
+ * instead of every time the messaging service is created — a cold process
+ * woken for a call no longer resolves the ringtone and rebuilds
+ * AudioAttributes before it can post the ring notification.
+ */
+final class NotificationChannels {
+
+    // Bumped to v2 in 1.5.10 so Android picks up the sound + vibration
+    // changes — channel settings are immutable after first creation, so
+    // a new id is the only way to ship updated audio attributes without
+    // an uninstall.
+    static final String CHANNEL_ID_CALLS = "incoming_calls_v2";
+    // Bumped to v2 for issue #32: previous "messages" channel was created
+    // with default importance and is immutable — re-create as v2 to upgrade
+    // to IMPORTANCE_HIGH so heads-up banners with text preview show on
+    // Android (matches WhatsApp behaviour).
+    static final String CHANNEL_ID_MESSAGES = "messages_v2";
+
+    /**
+     * Bump whenever a channel is added, renamed or replaced, and list the ids
+     * it supersedes in OBSOLETE_CHANNEL_IDS so upgrades clean them up.
+     */
+    private static final int CHANNELS_VERSION = 2;
+    private static final String[] OBSOLETE_CHANNEL_IDS = {"incoming_calls", "messages"};
+
+    private static final String PREFS = "notification_channels";
+    private static final String KEY_VERSION = "version";
+
+    private static volatile NotificationManager notificationManager;
+    private static volatile Uri ringtoneUri;
+
+    private NotificationChannels() {
+    }
+
+    /**
+     * Create or migrate channels if this install hasn't seen CHANNELS_VERSION yet.
+     * Cheap after the first run: a SharedPreferences read plus two channel
+     * lookups. The lookups matter — Auto Backup restores the prefs onto a
+     * fresh install or device, where the channels themselves don't exist.
+     */
+    static void ensureCreated(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        NotificationManager nm = notificationManager(context);
+        if (prefs.getInt(KEY_VERSION, 0) == CHANNELS_VERSION
+                && nm.getNotificationChannel(CHANNEL_ID_CALLS) != null
+                && nm.getNotificationChannel(CHANNEL_ID_MESSAGES) != null) {
+            return;
+        }
+
+        for (String id : OBSOLETE_CHANNEL_IDS) {
+            nm.deleteNotificationChannel(id);
+        }
+        nm.createNotificationChannel(buildCallChannel());
+        nm.createNotificationChannel(buildMessagesChannel());
+
+        prefs.edit().putInt(KEY_VERSION, CHANNELS_VERSION).apply();
+    }
+
+    static NotificationManager notificationManager(Context context) {
+        NotificationManager nm = notificationManager;
+        if (nm == null) {
+            nm = (NotificationManager) context.getApplicationContext()
+                    .getSystemService(Context.NOTIFICATION_SERVICE);
+            notificationManager = nm;
+        }
+        return nm;
+    }
+
+    static Uri ringtoneUri() {
+        Uri uri = ringtoneUri;
+        if (uri == null) {
+            uri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_RINGTONE);
+            ringtoneUri = uri;
+        }
+        return uri;
+    }
+
+    private static NotificationChannel buildMessagesChannel() {
+        NotificationChannel channel = new NotificationChannel(
+                CHANNEL_ID_MESSAGES,
+                "Meddelanden",
+                NotificationManager.IMPORTANCE_HIGH
+        );
+        channel.setDescription("Push-notiser för chattmeddelanden");
+        channel.enableVibration(true);
+        channel.setLockscreenVisibility(NotificationCompat.VISIBILITY_PUBLIC);
+        return channel;
+    }
+
+    private static NotificationChannel buildCallChannel() {
+        NotificationChannel channel = new NotificationChannel(
+                CHANNEL_ID_CALLS,
+                "Incoming Calls",
+                NotificationManager.IMPORTANCE_HIGH
+        );
+        channel.setDescription("Notifications for incoming voice and video calls");
+
+        // Earlier versions silenced the channel and relied on
+        // IncomingCallActivity to play the ringtone. That works on a
+        // locked screen (where setFullScreenIntent actually launches
+        // the activity), but on an unlocked screen Android shows a
+        // heads-up banner instead — and a silenced channel means no
+        // sound. Set the system ringtone with USAGE_NOTIFICATION_RINGTONE
+        // so the heads-up plays a real ring sound. IncomingCallActivity
+        // cancels this notification when it appears, so we never
+        // double-ring.
+        AudioAttributes audioAttrs = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_NOTIFICATION_RINGTONE)
+                .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                .build();
+        channel.setSound(ringtoneUri(), audioAttrs);
+        channel.enableVibration(true);
+        channel.setVibrationPattern(new long[]{0, 1000, 500, 1000, 500});
+        channel.setBypassDnd(true);
+        channel.setLockscreenVisibility(NotificationCompat.VISIBILITY_PUBLIC);
+        return channel;
+    }
+}
@@ -0,0 +1,144 @@
+package com.zemichat.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a batch of copy jobs on a fixed worker pool and hands the results
+ * back in submission order.
+ *
+ * Copying a gallery album is bound by content-provider latency, not CPU,
+ * so several copies overlap. Two limits keep that in check: the worker
+ * count, and a byte budget — a job only starts once its estimated size
+ * fits in what the running jobs have left over. A single job larger than
+ * the whole budget still runs, just alone.
+ */
+class OrderedCopyPipeline {
+
+    interface Sink<T> {
+        /** Called on the calling thread, in job order; result is null if the job failed. */
+        void accept(int index, T result);
+    }
+
+    interface Cancellation {
+        boolean isCancelled();
+    }
+
+    private static final int BYTES_PER_PERMIT = 1024;
+    // How often a coordinator waiting on one copy re-checks cancellation
+    private static final long CANCELLATION_POLL_MS = 100;
+
+    private final ExecutorService workers;
+    private final Semaphore budget;
+    private final int budgetPermits;
+    private final Set<Future<?>> inFlight = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutDown;
+
+    OrderedCopyPipeline(int workerCount, long byteBudget) {
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                workerCount, workerCount, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> new Thread(r, "ShareCopy-" + n.incrementAndGet())
+        );
+        pool.allowCoreThreadTimeOut(true);
+        this.workers = pool;
+        this.budgetPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, byteBudget / BYTES_PER_PERMIT));
+        this.budget = new Semaphore(budgetPermits, true);
+    }
+
+    /**
+     * Run every job and deliver results in order. Blocks the calling thread
+     * until all jobs have finished, cancellation is observed or the pipeline
+     * is shut down; in the latter two cases jobs not yet delivered are
+     * cancelled. Cancellation is re-checked every CANCELLATION_POLL_MS while
+     * waiting, so a superseded share doesn't sit out a long copy.
+     *
+     * @param estimatedSizes per-job size estimates in bytes, used against the budget
+     */
+    <T> void run(List<Callable<T>> jobs, long[] estimatedSizes, Sink<T> sink, Cancellation cancellation)
+            throws InterruptedException {
+        List<Future<T>> futures = new ArrayList<>(jobs.size());
+        try {
+            for (int i = 0; i < jobs.size(); i++) {
+                Callable<T> job = jobs.get(i);
+                int permits = permitsFor(estimatedSizes[i]);
+                Future<T> future = workers.submit(() -> {
+                    budget.acquire(permits);
+                    try {
+                        return job.call();
+                    } finally {
+                        budget.release(permits);
+                    }
+                });
+                futures.add(future);
+                inFlight.add(future);
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                T result;
+                try {
+                    result = await(futures.get(i), cancellation);
+                } catch (CancellationException e) {
+                    return; // Cancelled or shut down — the rest go in finally
+                } catch (ExecutionException e) {
+                    // Interrupted by shutdown is not a failed copy
+                    if (shutDown || cancellation.isCancelled()) return;
+                    result = null;
+                }
+                sink.accept(i, result);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shut down while submitting
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+                inFlight.remove(future);
+            }
+        }
+    }
+
+    /**
+     * Stop the workers and cancel every job, so coordinators blocked in
+     * run() return instead of waiting on jobs that will never run.
+     */
+    void shutdown() {
+        shutDown = true;
+        workers.shutdownNow();
+        for (Future<?> future : inFlight) {
+            future.cancel(true);
+        }
+    }
+
+    private <T> T await(Future<T> future, Cancellation cancellation)
+            throws InterruptedException, ExecutionException {
+        while (true) {
+            if (shutDown || cancellation.isCancelled()) throw new CancellationException();
+            try {
+                return future.get(CANCELLATION_POLL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // Still copying — check again
+            }
+        }
+    }
+
+    private int permitsFor(long bytes) {
+        if (bytes <= 0) return 1;
+        long permits = (bytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT;
+        return (int) Math.min(permits, budgetPermits);
+    }
+}
@@ -0,0 +1,198 @@
+package com.zemichat.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers NativeOutbox items in batches once the device is online.
+ *
+ * Each run sends up to BATCH_SIZE messages in a single PostgREST bulk
+ * insert. Duplicate ids are ignored server-side, so a batch that was
+ * accepted but whose response got lost is safe to send again. WorkManager
+ * handles the network constraint, exponential backoff and surviving
+ * reboots; no WebView is involved.
+ *
+ * An expired mirrored session is not retried: native code can't refresh it
+ * (see BackendSession), so inline replies are marked as waiting for the
+ * app instead, and setBackendSession schedules a new run once JS has a
+ * fresh token.
+ */
+public class OutboxWorker extends Worker {
+
+    private static final String TAG = "OutboxWorker";
+    private static final String UNIQUE_WORK = "native-outbox";
+    private static final int BATCH_SIZE = 20;
+    // Batches per run before yielding back to WorkManager
+    private static final int MAX_BATCHES = 5;
+
+    public OutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedule a flush. Appends to any run in progress so items queued
+     * while it is sending are picked up too.
+     */
+    static void schedule(Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, 10, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniqueWork(UNIQUE_WORK, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context context = getApplicationContext();
+        NativeOutbox outbox = NativeOutbox.get(context);
+
+        BackendSession session = BackendSession.load(context);
+        if (session == null) return Result.success(); // Signed out — JS reconciles on next login
+        if (session.isExpired()) return blocked(context, outbox);
+
+        SupabaseRestClient client = session.restClient();
+        for (int i = 0; i < MAX_BATCHES; i++) {
+            List<NativeOutbox.Item> batch = outbox.pending(BATCH_SIZE);
+            if (batch.isEmpty()) return Result.success();
+
+            int status;
+            try {
+                status = client.insertAll("messages", toRows(batch, session.userId), "id");
+            } catch (IOException e) {
+                // Counts as an attempt, so a flaky link can't retry forever
+                Log.w(TAG, "Outbox batch failed", e);
+                record(context, outbox, batch, false, false);
+                return Result.retry();
+            }
+
+            if (SupabaseRestClient.isSuccess(status)) {
+                record(context, outbox, batch, true, false);
+            } else if (status == 401) {
+                return blocked(context, outbox); // Token expired mid-run
+            } else if (SupabaseRestClient.isRetryable(status)) {
+                record(context, outbox, batch, false, false);
+                return Result.retry();
+            } else if (batch.size() > 1) {
+                // One bad row rejects the whole insert — isolate it
+                Result stopped = sendOneByOne(client, outbox, batch, session.userId);
+                if (stopped != null) return stopped;
+            } else {
+                // RLS denial (left the chat) or a bad row — won't fix itself
+                Log.w(TAG, "Outbox item rejected with HTTP " + status);
+                record(context, outbox, batch, false, true);
+            }
+        }
+        // More left than one run should take; let WorkManager schedule the rest
+        schedule(context);
+        return Result.success();
+    }
+
+    /**
+     * Send each item of a rejected batch on its own. Returns the Result to
+     * stop the run with (network gone, token expired), or null to go on.
+     */
+    private Result sendOneByOne(SupabaseRestClient client, NativeOutbox outbox,
+                                List<NativeOutbox.Item> batch, String userId) {
+        Context context = getApplicationContext();
+        for (NativeOutbox.Item item : batch) {
+            List<NativeOutbox.Item> single = Collections.singletonList(item);
+            int status;
+            try {
+                status = client.insertAll("messages", toRows(single, userId), "id");
+            } catch (IOException e) {
+                record(context, outbox, single, false, false);
+                return Result.retry();
+            }
+            if (status == 401) return blocked(context, outbox);
+            boolean sent = SupabaseRestClient.isSuccess(status);
+            boolean permanent = !sent && !SupabaseRestClient.isRetryable(status);
+            record(context, outbox, single, sent, permanent);
+        }
+        return null;
+    }
+
+    /**
+     * Record the attempt and update inline-reply notifications: delivered,
+     * or failed — permanently or by running out of attempts.
+     */
+    private static void record(Context context, NativeOutbox outbox, List<NativeOutbox.Item> batch,
+                               boolean sent, boolean permanent) {
+        List<NativeOutbox.Item> failed = outbox.recordAttempt(batch, sent, permanent);
+        if (sent) notifyDeliveredReplies(context, batch);
+        notifyFailedReplies(context, failed);
+    }
+
+    private static JSONArray toRows(List<NativeOutbox.Item> batch, String userId) {
+        JSONArray rows = new JSONArray();
+        try {
+            for (NativeOutbox.Item item : batch) {
+                // Bulk insert needs the same keys on every row
+                rows.put(new JSONObject()
+                        .put("id", item.id)
+                        .put("chat_id", item.chatId)
+                        .put("sender_id", userId)
+                        .put("type", item.type)
+                        .put("content", item.content != null ? item.content : JSONObject.NULL)
+                        .put("reply_to_id", item.replyToId != null ? item.replyToId : JSONObject.NULL));
+            }
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        return rows;
+    }
+
+    /**
+     * Stop until JS syncs a fresh token, and tell the user why their replies
+     * haven't gone out.
+     */
+    private static Result blocked(Context context, NativeOutbox outbox) {
+        Set<String> chats = new HashSet<>();
+        for (NativeOutbox.Item item : outbox.pending(BATCH_SIZE * MAX_BATCHES)) {
+            if ("reply".equals(item.source) && chats.add(item.chatId)) {
+                MessageNotifier.onReplyBlocked(context, item.chatId);
+            }
+        }
+        return Result.success();
+    }
+
+    private static void notifyDeliveredReplies(Context context, List<NativeOutbox.Item> batch) {
+        for (NativeOutbox.Item item : batch) {
+            if ("reply".equals(item.source)) {
+                MessageNotifier.onReplyDelivered(context, item.chatId, item.id, item.content);
+            }
+        }
+    }
+
+    private static void notifyFailedReplies(Context context, List<NativeOutbox.Item> batch) {
+        for (NativeOutbox.Item item : batch) {
+            if ("reply".equals(item.source)) {
+                MessageNotifier.onReplyFailed(context, item.chatId, item.id, item.content);
+            }
+        }
+    }
+}
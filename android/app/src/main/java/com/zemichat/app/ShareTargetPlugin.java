@@ -3,7 +3,6 @@ package com.zemichat.app;
 import android.content.Intent;
 import android.net.Uri;
 import android.util.Base64;
-import android.webkit.MimeTypeMap;
 
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
@@ -12,19 +11,91 @@ import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
-import java.io.ByteArrayOutputStream;
-import java.io.InputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
-
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Receives Android share-sheet intents and hands them to the JS layer.
+ *
+ * Text shares are delivered immediately. Media shares are copied into the
+ * share cache off the UI thread — several items at once — so a large
+ * SEND_MULTIPLE never holds up the first WebView frame. The first
+ * "shareReceived" snapshot carries only small native thumbnails (previews)
+ * so the picker can render straight away; each copied item then publishes
+ * another snapshot ({ shareId, previews, items so far, total, complete }).
+ * The last snapshot of a share has complete = true.
+ */
 @CapacitorPlugin(name = "ShareTarget")
 public class ShareTargetPlugin extends Plugin {
 
-    private static final int MAX_FILE_SIZE = 20 * 1024 * 1024; // 20 MB
+    private static final int MAX_IMAGE_SIZE = 20 * 1024 * 1024; // 20 MB
+    // chat-media bucket file_size_limit — anything bigger fails upload anyway
+    private static final int MAX_MEDIA_SIZE = 50 * 1024 * 1024; // 50 MB
+    private static final int DEFAULT_CONCURRENT_READS = 3;
+    private static final int DEFAULT_IN_FLIGHT_BYTES = 48 * 1024 * 1024; // 48 MB
+    private static final int MAX_CHUNK_SIZE = 512 * 1024; // 512 KB → ~700 KB base64
+    // Budget charge for an item whose provider reports no size. Charging
+    // maxBytes would make one such video hold the whole budget; the copy
+    // enforces maxBytes itself while streaming.
+    private static final long UNKNOWN_SIZE_RESERVATION = 8L * 1024 * 1024; // 8 MB
+    private static final String EVENT_SHARE_RECEIVED = "shareReceived";
+
+    private final AtomicInteger shareIds = new AtomicInteger();
+    private ThreadPoolExecutor shareExecutor;
+    private OrderedCopyPipeline copyPipeline;
+    private ExecutorService mediaExecutor;
+    private SharedFileStore fileStore;
+    private ShareThumbnailer thumbnailer;
+    private final Map<String, FileChannel> openShares = new ConcurrentHashMap<>();
+
+    // Both guarded by this
+    private ShareSession currentShare = null;
     private JSObject pendingShareData = null;
 
     @Override
     public void load() {
         super.load();
+        fileStore = new SharedFileStore(getContext());
+        thumbnailer = new ShareThumbnailer(getContext().getContentResolver());
+
+        // One coordinator thread per share keeps everything off the UI thread.
+        // The queue is short because a newer share supersedes whatever is
+        // still queued.
+        shareExecutor = new ThreadPoolExecutor(
+                1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(4),
+                r -> new Thread(r, "ShareTarget"),
+                new ThreadPoolExecutor.DiscardOldestPolicy()
+        );
+        shareExecutor.allowCoreThreadTimeOut(true);
+
+        // Copies of a multi-item share overlap, bounded by worker count and
+        // by the bytes in flight. Tunable under plugins.ShareTarget in
+        // capacitor.config.ts.
+        copyPipeline = new OrderedCopyPipeline(
+                getConfig().getInt("maxConcurrentReads", DEFAULT_CONCURRENT_READS),
+                getConfig().getInt("inFlightByteBudget", DEFAULT_IN_FLIGHT_BYTES)
+        );
+        shareExecutor.execute(fileStore::trim);
+
+        // Decode/encode work requested from JS. Serial on purpose — two
+        // full-size decodes at once is how low-end devices run out of heap.
+        mediaExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "ShareMedia"));
+
         handleIntent(getActivity().getIntent());
     }
 
@@ -34,6 +105,31 @@ public class ShareTargetPlugin extends Plugin {
         handleIntent(intent);
     }
 
+    @Override
+    protected void handleOnDestroy() {
+        super.handleOnDestroy();
+        if (shareExecutor != null) {
+            shareExecutor.shutdown();
+        }
+        if (copyPipeline != null) {
+            copyPipeline.shutdown();
+        }
+        if (mediaExecutor != null) {
+            mediaExecutor.shutdown();
+        }
+        for (FileChannel channel : openShares.values()) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+        openShares.clear();
+    }
+
+    /**
+     * Runs on the UI thread — only inspects the intent; all I/O is queued.
+     */
     private void handleIntent(Intent intent) {
         if (intent == null) return;
 
@@ -42,145 +138,366 @@ public class ShareTargetPlugin extends Plugin {
 
         if (type == null) return;
 
-        JSObject data = null;
-
         if (Intent.ACTION_SEND.equals(action)) {
             if ("text/plain".equals(type)) {
-                data = handleSendText(intent);
-            } else if (type.startsWith("image/")) {
-                data = handleSendImage(intent);
+                handleSendText(intent);
+            } else if (isMediaType(type)) {
+                Uri uri = intent.getParcelableExtra(Intent.EXTRA_STREAM);
+                if (uri != null) {
+                    ArrayList<Uri> uris = new ArrayList<>();
+                    uris.add(uri);
+                    startMediaShare(shareKind(type), uris, intent.getStringExtra(Intent.EXTRA_TEXT));
+                }
             }
-        } else if (Intent.ACTION_SEND_MULTIPLE.equals(action) && type.startsWith("image/")) {
-            data = handleSendMultipleImages(intent);
-        }
-
-        if (data != null) {
-            if (hasListeners("shareReceived")) {
-                notifyListeners("shareReceived", data);
-                pendingShareData = null;
-            } else {
-                // JS not ready yet (cold start) — buffer for polling
-                pendingShareData = data;
+        } else if (Intent.ACTION_SEND_MULTIPLE.equals(action) && isMediaType(type)) {
+            ArrayList<Uri> uris = intent.getParcelableArrayListExtra(Intent.EXTRA_STREAM);
+            if (uris != null && !uris.isEmpty()) {
+                startMediaShare(shareKind(type), uris, intent.getStringExtra(Intent.EXTRA_TEXT));
             }
         }
     }
 
-    private JSObject handleSendText(Intent intent) {
-        String text = intent.getStringExtra(Intent.EXTRA_TEXT);
-        if (text == null || text.isEmpty()) return null;
-
-        JSObject data = new JSObject();
-        data.put("type", "text");
-        data.put("text", text);
-        data.put("items", new JSArray());
-        return data;
+    private static boolean isMediaType(String type) {
+        return type.startsWith("image/") || type.startsWith("video/")
+                || type.startsWith("audio/") || type.startsWith("application/");
     }
 
-    private JSObject handleSendImage(Intent intent) {
-        Uri imageUri = intent.getParcelableExtra(Intent.EXTRA_STREAM);
-        if (imageUri == null) return null;
-
-        JSObject item = readUri(imageUri);
-        if (item == null) return null;
+    /**
+     * Share "type" reported to JS. Items carry their own mimeType; this is
+     * the family the sending app declared for the whole share.
+     */
+    private static String shareKind(String type) {
+        if (type.startsWith("image/")) return "image";
+        if (type.startsWith("video/")) return "video";
+        if (type.startsWith("audio/")) return "audio";
+        return "file";
+    }
 
-        JSArray items = new JSArray();
-        items.put(item);
+    private static long maxBytesFor(String mimeType) {
+        return mimeType.startsWith("image/") ? MAX_IMAGE_SIZE : MAX_MEDIA_SIZE;
+    }
 
-        // Also grab any text that came along
+    private void handleSendText(Intent intent) {
         String text = intent.getStringExtra(Intent.EXTRA_TEXT);
+        if (text == null || text.isEmpty()) return;
 
-        JSObject data = new JSObject();
-        data.put("type", "image");
-        data.put("text", text != null ? text : "");
-        data.put("items", items);
-        return data;
+        ShareSession session = new ShareSession(shareIds.incrementAndGet(), "text", text, 0);
+        synchronized (this) {
+            currentShare = session;
+        }
+        publish(session, true);
     }
 
-    private JSObject handleSendMultipleImages(Intent intent) {
-        ArrayList<Uri> imageUris = intent.getParcelableArrayListExtra(Intent.EXTRA_STREAM);
-        if (imageUris == null || imageUris.isEmpty()) return null;
+    private void startMediaShare(String kind, ArrayList<Uri> uris, String text) {
+        ShareSession session = new ShareSession(
+                shareIds.incrementAndGet(), kind, text != null ? text : "", uris.size());
+        synchronized (this) {
+            currentShare = session;
+            pendingShareData = null;
+        }
+        fileStore.release(); // The previous share's files may be trimmed now
 
-        JSArray items = new JSArray();
-        for (Uri uri : imageUris) {
-            JSObject item = readUri(uri);
-            if (item != null) {
-                items.put(item);
+        shareExecutor.execute(() -> {
+            SharedFileStore.UriInfo[] infos = new SharedFileStore.UriInfo[uris.size()];
+            for (int i = 0; i < uris.size(); i++) {
+                infos[i] = fileStore.query(uris.get(i));
             }
-        }
 
-        if (items.length() == 0) return null;
+            // Previews first: a thumbnail is a few KB, so the picker can show
+            // every tile long before the full copies below have finished.
+            try {
+                publishPreviews(session, uris, infos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
 
-        String text = intent.getStringExtra(Intent.EXTRA_TEXT);
+            List<Callable<JSObject>> jobs = new ArrayList<>(uris.size());
+            long[] sizes = new long[uris.size()];
+            for (int i = 0; i < uris.size(); i++) {
+                Uri uri = uris.get(i);
+                SharedFileStore.UriInfo info = infos[i];
+                long maxBytes = maxBytesFor(info.mimeType);
+
+                // Reject on the provider-reported size before opening the
+                // file, so an oversized video costs a metadata query, not I/O.
+                if (info.size > maxBytes) {
+                    sizes[i] = 0;
+                    jobs.add(() -> rejection(info, "too_large"));
+                    continue;
+                }
+                sizes[i] = info.size >= 0 ? info.size : Math.min(UNKNOWN_SIZE_RESERVATION, maxBytes);
+                jobs.add(() -> readUri(uri, info, maxBytes));
+            }
+
+            try {
+                copyPipeline.run(jobs, sizes, (index, item) -> {
+                    if (item == null) {
+                        session.rejected.put(rejection(infos[index], "unreadable"));
+                    } else if (item.has("reason")) {
+                        session.rejected.put(item);
+                    } else {
+                        session.items.put(item);
+                        publish(session, false);
+                    }
+                }, () -> !isCurrent(session));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
 
-        JSObject data = new JSObject();
-        data.put("type", "image");
-        data.put("text", text != null ? text : "");
-        data.put("items", items);
-        return data;
+            if (session.items.length() > 0 || session.rejected.length() > 0) {
+                publish(session, true);
+            }
+        });
     }
 
     /**
-     * Read a content URI into a base64 string with metadata.
-     * Content URIs are temporary so we must read eagerly.
+     * Generate a thumbnail per item on the copy workers and publish one
+     * snapshot once they are all done. Items without a thumbnail (audio,
+     * documents, provider failures) get an entry with no path.
      */
-    private JSObject readUri(Uri uri) {
-        try {
-            InputStream inputStream = getContext().getContentResolver().openInputStream(uri);
-            if (inputStream == null) return null;
-
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            byte[] chunk = new byte[8192];
-            int bytesRead;
-            int totalRead = 0;
-
-            while ((bytesRead = inputStream.read(chunk)) != -1) {
-                totalRead += bytesRead;
-                if (totalRead > MAX_FILE_SIZE) {
-                    inputStream.close();
-                    return null; // Too large
+    private void publishPreviews(ShareSession session, List<Uri> uris, SharedFileStore.UriInfo[] infos)
+            throws InterruptedException {
+        List<Callable<JSObject>> jobs = new ArrayList<>(uris.size());
+        for (int i = 0; i < uris.size(); i++) {
+            Uri uri = uris.get(i);
+            SharedFileStore.UriInfo info = infos[i];
+            jobs.add(() -> {
+                JSObject preview = new JSObject();
+                preview.put("mimeType", info.mimeType);
+                if (info.displayName != null) preview.put("fileName", info.displayName);
+                File thumb = fileStore.newFile("jpg");
+                if (thumbnailer.create(uri, info.mimeType, thumb)) {
+                    preview.put("thumbnailPath", Uri.fromFile(thumb).toString());
                 }
-                buffer.write(chunk, 0, bytesRead);
-            }
-            inputStream.close();
+                return preview;
+            });
+        }
 
-            byte[] bytes = buffer.toByteArray();
-            String base64 = Base64.encodeToString(bytes, Base64.NO_WRAP);
+        copyPipeline.run(jobs, new long[uris.size()], (index, preview) -> {
+            session.previews.put(preview != null ? preview : new JSObject());
+        }, () -> !isCurrent(session));
 
-            String mimeType = getContext().getContentResolver().getType(uri);
-            if (mimeType == null) mimeType = "image/jpeg";
+        if (isCurrent(session)) {
+            publish(session, false);
+        }
+    }
 
-            String fileName = "shared_image";
-            String ext = MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType);
-            if (ext != null) {
-                fileName = "shared_image." + ext;
-            }
+    private synchronized boolean isCurrent(ShareSession session) {
+        return session == currentShare;
+    }
+
+    /**
+     * Deliver a snapshot of the share to JS, or buffer it for
+     * getPendingShare() if no listener is attached yet (cold start).
+     */
+    private synchronized void publish(ShareSession session, boolean complete) {
+        if (session != currentShare) return;
 
-            JSObject item = new JSObject();
-            item.put("mimeType", mimeType);
-            item.put("fileName", fileName);
-            item.put("base64Data", base64);
-            item.put("size", bytes.length);
+        JSObject data = session.snapshot(complete);
+        if (hasListeners(EVENT_SHARE_RECEIVED)) {
+            notifyListeners(EVENT_SHARE_RECEIVED, data);
+            pendingShareData = null;
+        } else {
+            pendingShareData = data;
+        }
+    }
+
+    /**
+     * Copy a content URI into the share cache and describe it for JS.
+     * Content URIs are temporary so we must copy eagerly, but only the
+     * file:// path crosses the bridge — JS reads the bytes from disk.
+     */
+    private JSObject readUri(Uri uri, SharedFileStore.UriInfo info, long maxBytes) {
+        try {
+            SharedFileStore.SharedFile shared = fileStore.copy(uri, info, maxBytes);
+            if (shared == null) return rejection(info, "too_large");
+
+            JSObject item = describe(shared.file, shared.mimeType, shared.fileName, shared.size);
+            item.put("sha256", shared.sha256);
+            item.put("deduplicated", shared.deduplicated);
             return item;
         } catch (Exception e) {
             return null;
         }
     }
 
+    /**
+     * An item that was not copied, with why — JS tells the user instead of
+     * silently sending fewer files than they picked.
+     */
+    private static JSObject rejection(SharedFileStore.UriInfo info, String reason) {
+        JSObject rejected = new JSObject();
+        rejected.put("reason", reason);
+        if (info != null) {
+            rejected.put("mimeType", info.mimeType);
+            if (info.displayName != null) rejected.put("fileName", info.displayName);
+            if (info.size >= 0) rejected.put("size", info.size);
+        }
+        return rejected;
+    }
+
+    /**
+     * JS-facing description of a cached file. The id is the cache file name
+     * and is what the chunked read API takes.
+     */
+    private static JSObject describe(File file, String mimeType, String fileName, long size) {
+        JSObject item = new JSObject();
+        item.put("id", file.getName());
+        item.put("mimeType", mimeType);
+        item.put("fileName", fileName);
+        item.put("path", Uri.fromFile(file).toString());
+        item.put("size", size);
+        return item;
+    }
+
     /**
      * Called from JS to retrieve share data that arrived before the listener was set up (cold start).
+     * May be a partial snapshot (complete = false) — the rest follows as shareReceived events.
      */
     @PluginMethod
     public void getPendingShare(PluginCall call) {
-        if (pendingShareData != null) {
-            JSObject result = new JSObject();
-            result.put("data", pendingShareData);
+        JSObject data;
+        synchronized (this) {
+            data = pendingShareData;
             pendingShareData = null;
+        }
+
+        JSObject result = new JSObject();
+        result.put("data", data != null ? data : JSObject.NULL);
+        call.resolve(result);
+    }
+
+    /**
+     * Downscale and recompress a shared image before upload. Options are per
+     * item: { path, maxEdge?, quality? }. Resolves with a new item describing
+     * the JPEG in the share cache, or the original item unchanged when
+     * transcoding would not make it smaller.
+     */
+    @PluginMethod
+    public void transcodeImage(PluginCall call) {
+        String path = call.getString("path");
+        File src = fileStore.resolve(path);
+        if (src == null) {
+            call.reject("Unknown shared file");
+            return;
+        }
+        String mimeType = call.getString("mimeType", "image/jpeg");
+        String fileName = call.getString("fileName", src.getName());
+        int requestedEdge = call.getInt("maxEdge", ImageTranscoder.DEFAULT_MAX_EDGE);
+        if (requestedEdge <= 0) {
+            call.reject("maxEdge must be positive");
+            return;
+        }
+        int maxEdge = Math.min(requestedEdge, ImageTranscoder.MAX_EDGE_LIMIT);
+        int quality = Math.max(1, Math.min(100, call.getInt("quality", ImageTranscoder.DEFAULT_QUALITY)));
+
+        mediaExecutor.execute(() -> {
+            try {
+                File dst = fileStore.newFile("jpg");
+                ImageTranscoder.Result out =
+                        ImageTranscoder.transcode(src, mimeType, dst, maxEdge, quality);
+
+                JSObject item;
+                if (out == null) {
+                    item = describe(src, mimeType, fileName, src.length());
+                } else {
+                    item = describe(out.file, "image/jpeg", replaceExtension(fileName, "jpg"), out.size);
+                    item.put("width", out.width);
+                    item.put("height", out.height);
+                }
+                call.resolve(item);
+            } catch (Exception e) {
+                call.reject("Transcode failed", e);
+            } catch (OutOfMemoryError e) {
+                call.reject("Transcode failed: out of memory");
+            }
+        });
+    }
+
+    /**
+     * Open a cached share for chunked reading. Fallback for when the WebView
+     * cannot fetch the file:// path directly — JS then pulls base64 chunks
+     * with readChunk() and never holds the whole file as one string.
+     */
+    @PluginMethod
+    public void openShare(PluginCall call) {
+        String id = call.getString("id");
+        File file = fileStore.resolveId(id);
+        if (file == null) {
+            call.reject("Unknown shared file");
+            return;
+        }
+        try {
+            FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+            FileChannel previous = openShares.put(id, channel);
+            if (previous != null) previous.close();
+
+            JSObject result = new JSObject();
+            result.put("id", id);
+            result.put("size", channel.size());
             call.resolve(result);
-        } else {
+        } catch (IOException e) {
+            call.reject("Could not open shared file", e);
+        }
+    }
+
+    /**
+     * Read up to length bytes (capped at MAX_CHUNK_SIZE) at offset from a
+     * share opened with openShare(). Resolves { data: base64, bytesRead, eof }.
+     */
+    @PluginMethod
+    public void readChunk(PluginCall call) {
+        String id = call.getString("id");
+        FileChannel channel = id != null ? openShares.get(id) : null;
+        if (channel == null) {
+            call.reject("Shared file is not open");
+            return;
+        }
+        long offset = Math.max(0L, call.getLong("offset", 0L));
+        int length = Math.max(0, Math.min(MAX_CHUNK_SIZE, call.getInt("length", MAX_CHUNK_SIZE)));
+
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            // Positional reads don't move the channel position, so concurrent
+            // readChunk calls for the same id are safe.
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, offset + buffer.position());
+                if (n < 0) break;
+            }
+
+            int bytesRead = buffer.position();
             JSObject result = new JSObject();
-            result.put("data", JSObject.NULL);
+            result.put("data", Base64.encodeToString(buffer.array(), 0, bytesRead, Base64.NO_WRAP));
+            result.put("bytesRead", bytesRead);
+            result.put("eof", offset + bytesRead >= channel.size());
             call.resolve(result);
+        } catch (IOException e) {
+            call.reject("Could not read shared file", e);
+        }
+    }
+
+    /**
+     * Release a share opened with openShare(). The cached copy stays on disk.
+     */
+    @PluginMethod
+    public void closeShare(PluginCall call) {
+        String id = call.getString("id");
+        FileChannel channel = id != null ? openShares.remove(id) : null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
         }
+        call.resolve();
+    }
+
+    private static String replaceExtension(String fileName, String ext) {
+        int dot = fileName.lastIndexOf('.');
+        return (dot > 0 ? fileName.substring(0, dot) : fileName) + "." + ext;
     }
 
     /**
@@ -193,4 +510,48 @@ public class ShareTargetPlugin extends Plugin {
         getActivity().setIntent(cleanIntent);
         call.resolve();
     }
+
+    /**
+     * A share being copied in the background. Items are appended in share
+     * order by the coordinator thread only; snapshots copy them for the bridge.
+     */
+    private static class ShareSession {
+        final int id;
+        final String type;
+        final String text;
+        final int total;
+        final JSArray items = new JSArray();
+        final JSArray rejected = new JSArray();
+        final JSArray previews = new JSArray();
+
+        ShareSession(int id, String type, String text, int total) {
+            this.id = id;
+            this.type = type;
+            this.text = text;
+            this.total = total;
+        }
+
+        JSObject snapshot(boolean complete) {
+            JSArray copy = copyOf(items);
+
+            JSObject data = new JSObject();
+            data.put("shareId", id);
+            data.put("type", type);
+            data.put("text", text);
+            data.put("items", copy);
+            data.put("rejected", copyOf(rejected));
+            data.put("previews", copyOf(previews));
+            data.put("total", total);
+            data.put("complete", complete);
+            return data;
+        }
+
+        private static JSArray copyOf(JSArray array) {
+            JSArray copy = new JSArray();
+            for (int i = 0; i < array.length(); i++) {
+                copy.put(array.opt(i));
+            }
+            return copy;
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package com.zemichat.app;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.util.Size;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Small JPEG previews for the share sheet, made straight from the content URI.
+ *
+ * The picker only needs a 64 dp tile per item, so there is no reason to wait
+ * for a 15 MB copy before showing one. On Android 10+ the provider's own
+ * thumbnail is used (MediaStore keeps them cached, so this is usually a file
+ * read). Older versions sample-decode images and grab the first frame of
+ * videos. Anything else — audio, documents — gets no thumbnail.
+ */
+class ShareThumbnailer {
+
+    static final int THUMBNAIL_EDGE = 256;
+    private static final int THUMBNAIL_QUALITY = 70;
+
+    private final ContentResolver resolver;
+
+    ShareThumbnailer(ContentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Write a thumbnail for uri into dst. Returns false when the type has no
+     * preview or the provider can't produce one; dst is not left behind.
+     */
+    boolean create(Uri uri, String mimeType, File dst) {
+        boolean image = mimeType.startsWith("image/");
+        boolean video = mimeType.startsWith("video/");
+        if (!image && !video) return false;
+
+        Bitmap bitmap = null;
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                bitmap = resolver.loadThumbnail(uri, new Size(THUMBNAIL_EDGE, THUMBNAIL_EDGE), null);
+            } else if (image) {
+                bitmap = decodeSampled(uri);
+            } else {
+                bitmap = firstFrame(uri);
+            }
+            if (bitmap == null) return false;
+
+            try (FileOutputStream out = new FileOutputStream(dst)) {
+                if (bitmap.compress(Bitmap.CompressFormat.JPEG, THUMBNAIL_QUALITY, out)) {
+                    return true;
+                }
+            }
+            dst.delete();
+            return false;
+        } catch (IOException | RuntimeException e) {
+            dst.delete();
+            return false;
+        } finally {
+            if (bitmap != null) bitmap.recycle();
+        }
+    }
+
+    private Bitmap decodeSampled(Uri uri) throws IOException {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return null;
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null;
+
+        BitmapFactory.Options opts = new BitmapFactory.Options();
+        opts.inSampleSize = ImageTranscoder.computeSampleSize(
+                Math.min(bounds.outWidth, bounds.outHeight), THUMBNAIL_EDGE);
+        opts.inPreferredConfig = Bitmap.Config.RGB_565;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            if (in == null) return null;
+            return BitmapFactory.decodeStream(in, null, opts);
+        }
+    }
+
+    private Bitmap firstFrame(Uri uri) throws IOException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try (AssetFileDescriptor afd = resolver.openAssetFileDescriptor(uri, "r")) {
+            if (afd == null) return null;
+            if (afd.getLength() == AssetFileDescriptor.UNKNOWN_LENGTH) {
+                retriever.setDataSource(afd.getFileDescriptor());
+            } else {
+                retriever.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            }
+            Bitmap frame = retriever.getFrameAtTime(0, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null) return null;
+
+            int longEdge = Math.max(frame.getWidth(), frame.getHeight());
+            if (longEdge <= THUMBNAIL_EDGE) return frame;
+            float scale = (float) THUMBNAIL_EDGE / longEdge;
+            Bitmap scaled = Bitmap.createScaledBitmap(frame,
+                    Math.round(frame.getWidth() * scale), Math.round(frame.getHeight() * scale), true);
+            if (scaled != frame) frame.recycle();
+            return scaled;
+        } finally {
+            retriever.release();
+        }
+    }
+}
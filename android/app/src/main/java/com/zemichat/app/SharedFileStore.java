@@ -0,0 +1,345 @@
+package com.zemichat.app;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.webkit.MimeTypeMap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * App-private, content-addressed cache of files received through the share sheet.
+ *
+ * Content URIs handed to us by other apps are only readable while the
+ * share intent is alive, so every item is copied into getCacheDir()/shared
+ * straight away. The copy streams through one small reusable buffer — the
+ * file never lands in a Java array — so peak heap stays flat whether the
+ * file is 200 KB or 20 MB. JS receives the resulting file:// path and reads
+ * it itself.
+ *
+ * A SHA-256 is computed on the same pass and names the cached file. Sharing
+ * the same photo to several chats in a row therefore resolves to one file
+ * and one hash, which JS can use to skip repeat uploads. The directory is
+ * trimmed least-recently-used first once it grows past MAX_CACHE_BYTES,
+ * sparing every file handed out for the share in flight — JS may not have
+ * uploaded them yet.
+ */
+class SharedFileStore {
+
+    private static final String DIR_NAME = "shared";
+    private static final String TMP_PREFIX = "tmp-";
+    private static final long MAX_CACHE_BYTES = 256L * 1024 * 1024; // 256 MB
+    private static final long STALE_TMP_MS = 60 * 60 * 1000L; // 1 h
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ContentResolver resolver;
+    private final File dir;
+    // Files of the current share, spared by trimming until release(). Guarded by this.
+    private final Set<File> inUse = new HashSet<>();
+
+    SharedFileStore(Context context) {
+        this.resolver = context.getContentResolver();
+        this.dir = new File(context.getCacheDir(), DIR_NAME);
+    }
+
+    /**
+     * Copy a content URI into the cache. Returns null when the file turns out
+     * to be larger than maxBytes while streaming — the partial copy is deleted.
+     * Callers should reject on UriInfo.size first so oversized files are never
+     * opened; this cap covers providers that don't report a size.
+     */
+    SharedFile copy(Uri uri, UriInfo info, long maxBytes) throws IOException {
+        String mimeType = info.mimeType;
+        String ext = MimeTypeMap.getSingleton().getExtensionFromMimeType(mimeType);
+
+        // Documents keep their real name — it's what the recipient sees.
+        // Photos keep the anonymous name they've always had.
+        String fileName;
+        if (info.displayName != null && !mimeType.startsWith("image/")) {
+            fileName = info.displayName;
+        } else {
+            String base = mimeType.startsWith("image/") ? "shared_image" : "shared_file";
+            fileName = ext != null ? base + "." + ext : base;
+        }
+
+        File tmp = newFile(null, TMP_PREFIX);
+        MessageDigest sha256 = newSha256();
+
+        long size;
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            size = copyInto(uri, out.getChannel(), maxBytes, sha256);
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+
+        if (size < 0) {
+            tmp.delete();
+            return null; // Too large
+        }
+
+        String hash = toHex(sha256.digest());
+        File target = new File(dir, hash + (ext != null ? "." + ext : ""));
+        boolean deduplicated;
+        synchronized (this) {
+            deduplicated = target.isFile();
+            if (deduplicated) {
+                // Same bytes already cached — keep that copy and mark it as used
+                tmp.delete();
+                target.setLastModified(System.currentTimeMillis());
+            } else if (!tmp.renameTo(target)) {
+                tmp.delete();
+                throw new IOException("Could not move " + tmp + " to " + target);
+            }
+            inUse.add(target);
+            trimToSize(MAX_CACHE_BYTES);
+        }
+        return new SharedFile(target, mimeType, fileName, size, hash, deduplicated);
+    }
+
+    /**
+     * A fresh, uniquely named file in the share cache, kept until release()
+     * like the copies themselves.
+     */
+    File newFile(String ext) throws IOException {
+        File file = newFile(ext, "");
+        synchronized (this) {
+            inUse.add(file);
+        }
+        return file;
+    }
+
+    /**
+     * The share these files belonged to has been superseded; let trimming
+     * have them.
+     */
+    synchronized void release() {
+        inUse.clear();
+    }
+
+    private File newFile(String ext, String prefix) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Could not create " + dir);
+        }
+        return new File(dir, prefix + UUID.randomUUID() + (ext != null ? "." + ext : ""));
+    }
+
+    /**
+     * Map a file:// path previously handed to JS back to the cached file.
+     * Returns null for anything outside the share cache, so JS cannot point
+     * native code at arbitrary app files.
+     */
+    File resolve(String path) {
+        if (path == null) return null;
+        Uri uri = Uri.parse(path);
+        String filePath = "file".equals(uri.getScheme()) ? uri.getPath() : path;
+        if (filePath == null) return null;
+
+        File file = new File(filePath);
+        try {
+            String parent = file.getCanonicalFile().getParent();
+            if (!dir.getCanonicalPath().equals(parent)) return null;
+        } catch (IOException e) {
+            return null;
+        }
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Look up a cached file by the id handed to JS (its file name).
+     */
+    File resolveId(String id) {
+        if (id == null || id.isEmpty() || id.contains("/") || id.startsWith(".")
+                || id.startsWith(TMP_PREFIX)) return null;
+        File file = new File(dir, id);
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Type, display name and size for a URI, from the resolver and
+     * OpenableColumns. Only metadata — no bytes are read. Size is -1 when
+     * the provider does not report one.
+     */
+    UriInfo query(Uri uri) {
+        String mimeType = resolver.getType(uri);
+        if (mimeType == null) mimeType = "image/jpeg";
+
+        String displayName = null;
+        long size = -1;
+        String[] projection = {OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+        try (Cursor cursor = resolver.query(uri, projection, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                if (!cursor.isNull(0)) displayName = cursor.getString(0);
+                if (!cursor.isNull(1)) size = cursor.getLong(1);
+            }
+        } catch (RuntimeException e) {
+            // Some providers reject projections — treat as unknown
+        }
+        return new UriInfo(mimeType, displayName, size);
+    }
+
+    /**
+     * Housekeeping at plugin load: drop temp files left by copies that died
+     * mid-way, then trim the cache to its size limit.
+     */
+    synchronized void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        long cutoff = System.currentTimeMillis() - STALE_TMP_MS;
+        for (File f : files) {
+            if (f.getName().startsWith(TMP_PREFIX) && f.lastModified() < cutoff) {
+                f.delete();
+            }
+        }
+        trimToSize(MAX_CACHE_BYTES);
+    }
+
+    /**
+     * Delete least-recently-used files until the cache fits in maxBytes.
+     * In-progress temp files and the current share's files are spared.
+     */
+    private void trimToSize(long maxBytes) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= maxBytes) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : files) {
+            if (total <= maxBytes) break;
+            if (inUse.contains(f) || f.getName().startsWith(TMP_PREFIX)) continue;
+            long length = f.length();
+            if (f.delete()) total -= length;
+        }
+    }
+
+    private long copyInto(Uri uri, FileChannel dst, long maxBytes, MessageDigest digest) throws IOException {
+        // Most providers (MediaStore, Photos, Files) hand out a regular file
+        // descriptor, which tells us the size before a single byte is read.
+        ParcelFileDescriptor pfd = null;
+        try {
+            pfd = resolver.openFileDescriptor(uri, "r");
+        } catch (FileNotFoundException | SecurityException e) {
+            // Stream-only provider — fall through to openInputStream below
+        }
+
+        if (pfd != null) {
+            try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+                long statSize = pfd.getStatSize();
+                if (statSize > maxBytes) return -1;
+                // Regular file: read its channel directly. Pipe or socket
+                // (statSize < 0): wrap the stream instead, since FileChannel
+                // assumes a seekable source.
+                ReadableByteChannel src = statSize >= 0 ? in.getChannel() : Channels.newChannel(in);
+                return transfer(src, dst, maxBytes, digest);
+            }
+        }
+
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) throw new FileNotFoundException(uri.toString());
+        try (ReadableByteChannel src = Channels.newChannel(in)) {
+            return transfer(src, dst, maxBytes, digest);
+        }
+    }
+
+    /**
+     * Copy src into dst until EOF, feeding every byte through digest on the
+     * way. Returns the number of bytes copied, or -1 as soon as more than
+     * maxBytes have been read.
+     */
+    static long transfer(ReadableByteChannel src, FileChannel dst, long maxBytes, MessageDigest digest)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+        long total = 0;
+        int n;
+        while ((n = src.read(buffer)) != -1) {
+            if (n == 0) continue;
+            total += n;
+            if (total > maxBytes) return -1;
+
+            buffer.flip();
+            digest.update(buffer.array(), 0, buffer.limit());
+            while (buffer.hasRemaining()) {
+                dst.write(buffer);
+            }
+            buffer.clear();
+        }
+        return total;
+    }
+
+    static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int b = bytes[i] & 0xFF;
+            out[i * 2] = HEX[b >>> 4];
+            out[i * 2 + 1] = HEX[b & 0x0F];
+        }
+        return new String(out);
+    }
+
+    /**
+     * What the provider says about a shared URI before it is opened.
+     */
+    static class UriInfo {
+        final String mimeType;
+        final String displayName;
+        final long size;
+
+        UriInfo(String mimeType, String displayName, long size) {
+            this.mimeType = mimeType;
+            this.displayName = displayName;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A shared item that has been copied into the cache.
+     */
+    static class SharedFile {
+        final File file;
+        final String mimeType;
+        final String fileName;
+        final long size;
+        final String sha256;
+        final boolean deduplicated;
+
+        SharedFile(File file, String mimeType, String fileName, long size,
+                   String sha256, boolean deduplicated) {
+            this.file = file;
+            this.mimeType = mimeType;
+            this.fileName = fileName;
+            this.size = size;
+            this.sha256 = sha256;
+            this.deduplicated = deduplicated;
+        }
+    }
+}
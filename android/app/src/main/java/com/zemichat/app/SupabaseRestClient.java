@@ -0,0 +1,164 @@
+package com.zemichat.app;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal PostgREST client for the few writes native code makes on its own.
+ *
+ * Deliberately tiny — HttpURLConnection, no dependencies — and constructed
+ * from a plain base URL so it can be pointed at a local stand-in server in
+ * tests. Row-level security applies exactly as for the JS client, since the
+ * user's own access token is sent.
+ */
+class SupabaseRestClient {
+
+    private static final String TAG = "SupabaseRestClient";
+
+    static final int CONNECT_TIMEOUT_MS = 3_000;
+    static final int READ_TIMEOUT_MS = 4_000;
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF_MS = 500;
+
+    private final String baseUrl;
+    private final String anonKey;
+    private final String accessToken;
+
+    SupabaseRestClient(String baseUrl, String anonKey, String accessToken) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.anonKey = anonKey;
+        this.accessToken = accessToken;
+    }
+
+    /**
+     * INSERT one row. Returns the HTTP status.
+     */
+    int insert(String table, JSONObject row) throws IOException {
+        return execute("POST", table, null, row.toString(), null);
+    }
+
+    /**
+     * INSERT many rows in one request, silently skipping rows whose
+     * conflictColumn value already exists. Returns the HTTP status.
+     */
+    int insertAll(String table, JSONArray rows, String conflictColumn) throws IOException {
+        return execute("POST", table, "on_conflict=" + conflictColumn, rows.toString(),
+                "resolution=ignore-duplicates");
+    }
+
+    /**
+     * UPDATE rows matching a PostgREST filter, e.g. "id=eq.123". Returns the HTTP status.
+     * Sent as PATCH, which Android's HttpURLConnection (OkHttp underneath)
+     * accepts but the desktop JDK's does not.
+     */
+    int update(String table, String filter, JSONObject values) throws IOException {
+        return execute("PATCH", table, filter, values.toString(), null);
+    }
+
+    /**
+     * DELETE rows matching a PostgREST filter. Returns the HTTP status.
+     */
+    int delete(String table, String filter) throws IOException {
+        return execute("DELETE", table, filter, null, null);
+    }
+
+    /**
+     * Whether a status is worth retrying: server errors and rate limiting.
+     * Other 4xx (expired token, RLS denial, bad row) won't fix themselves.
+     */
+    static boolean isRetryable(int status) {
+        return status >= 500 || status == 429 || status == 408;
+    }
+
+    static boolean isSuccess(int status) {
+        return status >= 200 && status < 300;
+    }
+
+    interface Request {
+        int execute() throws IOException;
+    }
+
+    /**
+     * Run a request until it succeeds, fails permanently, runs out of
+     * attempts or would overrun the deadline (elapsedRealtime). Backs off
+     * exponentially between attempts. Returns true on success.
+     */
+    static boolean withRetry(long deadline, Request request) {
+        long backoff = INITIAL_BACKOFF_MS;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                int status = request.execute();
+                if (isSuccess(status)) return true;
+                if (!isRetryable(status)) {
+                    Log.w(TAG, "Request failed with HTTP " + status);
+                    return false;
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Request attempt " + attempt + " failed", e);
+            }
+
+            long remaining = deadline - SystemClock.elapsedRealtime();
+            if (attempt == MAX_ATTEMPTS || remaining < backoff + CONNECT_TIMEOUT_MS) {
+                return false;
+            }
+            SystemClock.sleep(backoff);
+            backoff *= 2;
+        }
+        return false;
+    }
+
+    private int execute(String method, String table, String filter, String body, String prefer)
+            throws IOException {
+        String url = baseUrl + "/rest/v1/" + table + (filter != null ? "?" + filter : "");
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setRequestMethod(method);
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setUseCaches(false);
+            conn.setRequestProperty("apikey", anonKey);
+            conn.setRequestProperty("Authorization", "Bearer " + accessToken);
+            conn.setRequestProperty("Prefer", prefer != null ? "return=minimal," + prefer : "return=minimal");
+
+            if (body != null) {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json");
+                conn.setFixedLengthStreamingMode(bytes.length);
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(bytes);
+                }
+            }
+
+            int status = conn.getResponseCode();
+            drain(status >= 400 ? conn.getErrorStream() : conn.getInputStream());
+            return status;
+        } catch (IOException e) {
+            conn.disconnect();
+            throw e;
+        }
+    }
+
+    // Reading the body to the end lets the connection be reused
+    private static void drain(InputStream in) {
+        if (in == null) return;
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[1024];
+            while (stream.read(buffer) != -1) {
+                // Discard
+            }
+        } catch (IOException e) {
+            // Status is what matters
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.zemichat.app;
+
+import android.app.Application;
+
+/**
+ * Process entry point. Runs before any activity, service or receiver, which
+ * makes it the one place process-wide state can be set up exactly once —
+ * including when FCM cold-starts the process just to deliver a call push.
+ */
+public class ZemichatApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        AppLifecycleTracker.install(this);
+        NotificationChannels.ensureCreated(this);
+    }
+}
@@ -0,0 +1,148 @@
+package com.zemichat.app;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.telecom.Connection;
+import android.telecom.DisconnectCause;
+import android.telecom.TelecomManager;
+import android.telecom.VideoProfile;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.Map;
+
+/**
+ * A single self-managed call as Telecom sees it.
+ *
+ * Ringing: Telecom calls onShowIncomingCallUi, and we post the same
+ * notification / full-screen activity as the non-Telecom path. Answer and
+ * reject can arrive from Telecom (headset button, watch, car) or from our
+ * own UI via CallTelecom; both end up here. Once active, the connection
+ * holds the call's audio focus until JS reports the call ended.
+ */
+@RequiresApi(api = Build.VERSION_CODES.O)
+class ZemichatConnection extends Connection {
+
+    static final String URI_SCHEME = "zemichat";
+
+    private static final long RING_TIMEOUT_MS = 35_000;
+    // Answered, but JS never confirmed the call connected — don't hold the
+    // system in-call state forever.
+    private static final long CONNECT_TIMEOUT_MS = 60_000;
+
+    private final Context context;
+    private final Map<String, String> data;
+    private final String callLogId;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable ringTimeout = () -> {
+        CallRegistry.transition(callLogId, CallRegistry.State.TIMED_OUT);
+        disconnect(DisconnectCause.MISSED);
+    };
+
+    ZemichatConnection(Context context, Map<String, String> data) {
+        this.context = context;
+        this.data = data;
+        this.callLogId = data.get("callLogId");
+
+        setConnectionProperties(PROPERTY_SELF_MANAGED);
+        setAudioModeIsVoip(true);
+        setAddress(CallTelecom.addressFor(data.get("callerId")), TelecomManager.PRESENTATION_ALLOWED);
+        String callerName = data.get("callerName");
+        setCallerDisplayName(callerName != null ? callerName : "Unknown", TelecomManager.PRESENTATION_ALLOWED);
+        if ("video".equals(data.get("callType"))) {
+            setVideoState(VideoProfile.STATE_BIDIRECTIONAL);
+        }
+        setInitializing();
+        setRinging();
+        handler.postDelayed(ringTimeout, RING_TIMEOUT_MS);
+    }
+
+    @Override
+    public void onShowIncomingCallUi() {
+        if (CallRegistry.state(callLogId) != CallRegistry.State.RINGING) return;
+        IncomingCallNotifier.show(context, data);
+    }
+
+    /**
+     * Answered through Telecom (headset, watch, car). Launch the app the
+     * same way the notification's Answer action does.
+     */
+    @Override
+    public void onAnswer() {
+        CallLatencyTracer.mark(callLogId, CallLatencyTracer.Stage.ANSWER_TAPPED);
+        markActive();
+        IncomingCallNotifier.dismiss(context, callLogId);
+
+        Intent answerIntent = new Intent(context, MainActivity.class);
+        answerIntent.setAction("ANSWER_CALL");
+        for (Map.Entry<String, String> e : data.entrySet()) {
+            answerIntent.putExtra(e.getKey(), e.getValue());
+        }
+        answerIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        context.startActivity(answerIntent);
+    }
+
+    @Override
+    public void onAnswer(int videoState) {
+        onAnswer();
+    }
+
+    /**
+     * Rejected through Telecom (headset, watch, car).
+     */
+    @Override
+    public void onReject() {
+        IncomingCallNotifier.dismiss(context, callLogId);
+        if (CallRegistry.transition(callLogId, CallRegistry.State.DECLINED)) {
+            CallDeclineSender.send(context, callLogId, data.get("chatId"), null);
+        }
+        disconnect(DisconnectCause.REJECTED);
+    }
+
+    @Override
+    public void onDisconnect() {
+        disconnect(DisconnectCause.LOCAL);
+    }
+
+    @Override
+    public void onAbort() {
+        disconnect(DisconnectCause.UNKNOWN);
+    }
+
+    /**
+     * Move from ringing to active. No-op once active or disconnected.
+     */
+    void markActive() {
+        handler.post(() -> {
+            if (getState() != STATE_RINGING) return;
+            handler.removeCallbacks(ringTimeout);
+            setActive();
+            handler.postDelayed(this::disconnectIfUnconfirmed, CONNECT_TIMEOUT_MS);
+        });
+    }
+
+    /**
+     * JS reported the call media connected — the active call may now last
+     * as long as it likes.
+     */
+    void markConnected() {
+        handler.post(() -> handler.removeCallbacksAndMessages(null));
+    }
+
+    void disconnect(int cause) {
+        handler.post(() -> {
+            if (getState() == STATE_DISCONNECTED) return;
+            handler.removeCallbacksAndMessages(null);
+            setDisconnected(new DisconnectCause(cause));
+            destroy();
+            ZemichatConnectionService.remove(callLogId, this);
+        });
+    }
+
+    private void disconnectIfUnconfirmed() {
+        disconnect(DisconnectCause.ERROR);
+    }
+}
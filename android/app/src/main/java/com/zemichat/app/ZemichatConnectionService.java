@@ -0,0 +1,54 @@
+package com.zemichat.app;
+
+import android.os.Build;
+import android.telecom.Connection;
+import android.telecom.ConnectionRequest;
+import android.telecom.ConnectionService;
+import android.telecom.DisconnectCause;
+import android.telecom.PhoneAccountHandle;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Telecom binds to this service after CallTelecom.reportIncomingCall().
+ * It creates one self-managed ZemichatConnection per call and keeps them
+ * by callLogId so answer / decline / cancel can find them again.
+ */
+@RequiresApi(api = Build.VERSION_CODES.O)
+public class ZemichatConnectionService extends ConnectionService {
+
+    private static final Map<String, ZemichatConnection> connections = new ConcurrentHashMap<>();
+
+    static ZemichatConnection find(String callLogId) {
+        return callLogId != null ? connections.get(callLogId) : null;
+    }
+
+    static void remove(String callLogId, ZemichatConnection connection) {
+        if (callLogId != null) connections.remove(callLogId, connection);
+    }
+
+    @Override
+    public Connection onCreateIncomingConnection(PhoneAccountHandle handle, ConnectionRequest request) {
+        Map<String, String> data = CallTelecom.callData(request.getExtras());
+        ZemichatConnection connection = new ZemichatConnection(getApplicationContext(), data);
+
+        String callLogId = data.get("callLogId");
+        if (callLogId != null) {
+            ZemichatConnection previous = connections.put(callLogId, connection);
+            if (previous != null) previous.disconnect(DisconnectCause.CANCELED);
+        }
+        return connection;
+    }
+
+    @Override
+    public void onCreateIncomingConnectionFailed(PhoneAccountHandle handle, ConnectionRequest request) {
+        // Telecom refused after accepting the report (e.g. a managed call
+        // started in between). Ring the old way so the call isn't lost.
+        if (!AppLifecycleTracker.isAppInForeground()) {
+            IncomingCallNotifier.show(getApplicationContext(), CallTelecom.callData(request.getExtras()));
+        }
+    }
+}
@@ -1,17 +1,7 @@
 package com.zemichat.app;
 
-import android.app.ActivityManager;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.Context;
-import android.content.Intent;
-import android.media.AudioAttributes;
-import android.media.RingtoneManager;
-import android.net.Uri;
 import android.os.Build;
-
-import androidx.core.app.NotificationCompat;
+import android.telecom.DisconnectCause;
 
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
@@ -22,28 +12,17 @@ import java.util.Map;
  * Custom Firebase messaging service that intercepts incoming call data messages
  * and shows a full-screen call notification even when the app is in the background or killed.
  *
- * For regular notification+data messages (new_message), Android shows them automatically
- * when the app is in background, so we only handle data-only messages here.
+ * Chat messages arrive data-only for app versions that registered their token with
+ * native_messages (see push.ts) and are rendered by MessageNotifier. Older pushes with a
+ * 'notification' block are still shown automatically by FCM while the app is in background.
  */
 public class ZemichatMessagingService extends FirebaseMessagingService {
 
-    // Bumped to v2 in 1.5.10 so Android picks up the sound + vibration
-    // changes — channel settings are immutable after first creation, so
-    // a new id is the only way to ship updated audio attributes without
-    // an uninstall.
-    private static final String CHANNEL_ID_CALLS = "incoming_calls_v2";
-    // Bumped to v2 for issue #32: previous "messages" channel was created
-    // with default importance and is immutable — re-create as v2 to upgrade
-    // to IMPORTANCE_HIGH so heads-up banners with text preview show on
-    // Android (matches WhatsApp behaviour).
-    public static final String CHANNEL_ID_MESSAGES = "messages_v2";
-    private static final int CALL_NOTIFICATION_ID = 9001;
-
     @Override
     public void onCreate() {
         super.onCreate();
-        createCallNotificationChannel();
-        createMessagesNotificationChannel();
+        // Normally already done by ZemichatApplication; a no-op then.
+        NotificationChannels.ensureCreated(this);
     }
 
     @Override
@@ -51,18 +30,42 @@ public class ZemichatMessagingService extends FirebaseMessagingService {
         Map<String, String> data = remoteMessage.getData();
         String type = data.get("type");
 
+        if (("incoming_call".equals(type) || "call_cancelled".equals(type))
+                && !CallPushDeduper.accept(this, type, data.get("callLogId"),
+                        CallPushDeduper.parseSentAt(data.get("sentAt")))) {
+            return; // Duplicate, out of order or stale
+        }
+
         if ("incoming_call".equals(type)) {
+            // Already ringing or already over (late / duplicate push)
+            if (!CallRegistry.ring(data.get("callLogId"))) return;
+            CallLatencyTracer.mark(data.get("callLogId"), CallLatencyTracer.Stage.PUSH_RECEIVED);
+
             // Don't show native notification if app is in foreground —
             // the Realtime subscription will handle it in JS.
             if (!isAppInForeground()) {
-                showIncomingCallNotification(data);
+                // Prefer Telecom so the call gets system priority; it posts the
+                // same notification from ZemichatConnection.onShowIncomingCallUi.
+                if (!CallTelecom.reportIncomingCall(this, data)) {
+                    IncomingCallNotifier.show(this, data);
+                }
+                // Overlap WebView / bundle loading with the ring (opt-in)
+                CallPrewarmer.start(this);
             }
         } else if ("call_cancelled".equals(type)) {
-            dismissCallNotification();
+            String callLogId = data.get("callLogId");
+            if (CallRegistry.transition(callLogId, CallRegistry.State.CANCELLED)
+                    && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                CallTelecom.end(callLogId, DisconnectCause.MISSED);
+            }
+            // Always safe: only this call's notification is touched
+            IncomingCallNotifier.dismiss(this, callLogId);
+        } else if ("new_message".equals(type)) {
+            // In the foreground the Realtime subscription shows it in-app
+            if (!isAppInForeground()) {
+                MessageNotifier.onMessage(this, data);
+            }
         }
-        // For all other messages (or if app is foregrounded), Capacitor handles them.
-        // Note: data-only messages with no 'notification' field don't auto-display,
-        // so only our explicit call types need handling here.
     }
 
     @Override
@@ -72,153 +75,11 @@ public class ZemichatMessagingService extends FirebaseMessagingService {
         super.onNewToken(token);
     }
 
-    // ============================================================
-    // NOTIFICATION
-    // ============================================================
-
-    private void showIncomingCallNotification(Map<String, String> data) {
-        String callerName = data.get("callerName");
-        String callType = data.get("callType");
-        String callLogId = data.get("callLogId");
-        String chatId = data.get("chatId");
-        String callerId = data.get("callerId");
-        String callerAvatar = data.get("callerAvatar");
-
-        if (callerName == null) callerName = "Unknown";
-        if (callType == null) callType = "voice";
-
-        // Full-screen intent → IncomingCallActivity
-        Intent fullScreenIntent = new Intent(this, IncomingCallActivity.class);
-        fullScreenIntent.putExtra("callerName", callerName);
-        fullScreenIntent.putExtra("callType", callType);
-        fullScreenIntent.putExtra("callLogId", callLogId);
-        fullScreenIntent.putExtra("chatId", chatId);
-        fullScreenIntent.putExtra("callerId", callerId);
-        fullScreenIntent.putExtra("callerAvatar", callerAvatar);
-        fullScreenIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-
-        PendingIntent fullScreenPendingIntent = PendingIntent.getActivity(
-                this, 0, fullScreenIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        // Answer action → opens MainActivity with call data
-        Intent answerIntent = new Intent(this, MainActivity.class);
-        answerIntent.setAction("ANSWER_CALL");
-        answerIntent.putExtra("callLogId", callLogId);
-        answerIntent.putExtra("chatId", chatId);
-        answerIntent.putExtra("callType", callType);
-        answerIntent.putExtra("callerId", callerId);
-        answerIntent.putExtra("callerName", callerName);
-        answerIntent.putExtra("callerAvatar", callerAvatar);
-        answerIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-
-        PendingIntent answerPendingIntent = PendingIntent.getActivity(
-                this, 1, answerIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        // Decline action → just dismiss notification (caller's 30s timeout handles the rest)
-        Intent declineIntent = new Intent(this, CallDismissReceiver.class);
-        declineIntent.setAction("DECLINE_CALL");
-        declineIntent.putExtra("callLogId", callLogId);
-
-        PendingIntent declinePendingIntent = PendingIntent.getBroadcast(
-                this, 2, declineIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        String callTypeLabel = "video".equals(callType) ? "Video call" : "Voice call";
-        String contentText = callTypeLabel + " from " + callerName;
-
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID_CALLS)
-                .setSmallIcon(android.R.drawable.sym_call_incoming)
-                .setContentTitle(callerName)
-                .setContentText(contentText)
-                .setPriority(NotificationCompat.PRIORITY_MAX)
-                .setCategory(NotificationCompat.CATEGORY_CALL)
-                .setOngoing(true)
-                .setAutoCancel(false)
-                .setTimeoutAfter(35_000) // Auto-dismiss after 35 seconds
-                .setFullScreenIntent(fullScreenPendingIntent, true)
-                .addAction(android.R.drawable.ic_menu_close_clear_cancel, "Decline", declinePendingIntent)
-                .addAction(android.R.drawable.sym_action_call, "Answer", answerPendingIntent);
-
-        NotificationManager notificationManager =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.notify(CALL_NOTIFICATION_ID, builder.build());
-    }
-
-    private void dismissCallNotification() {
-        NotificationManager notificationManager =
-                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-        notificationManager.cancel(CALL_NOTIFICATION_ID);
-    }
-
-    private void createMessagesNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                    CHANNEL_ID_MESSAGES,
-                    "Meddelanden",
-                    NotificationManager.IMPORTANCE_HIGH
-            );
-            channel.setDescription("Push-notiser för chattmeddelanden");
-            channel.enableVibration(true);
-            channel.setLockscreenVisibility(NotificationCompat.VISIBILITY_PUBLIC);
-
-            NotificationManager nm = getSystemService(NotificationManager.class);
-            if (nm != null) {
-                nm.createNotificationChannel(channel);
-            }
-        }
-    }
-
-    private void createCallNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                    CHANNEL_ID_CALLS,
-                    "Incoming Calls",
-                    NotificationManager.IMPORTANCE_HIGH
-            );
-            channel.setDescription("Notifications for incoming voice and video calls");
-
-            // Earlier versions silenced the channel and relied on
-            // IncomingCallActivity to play the ringtone. That works on a
-            // locked screen (where setFullScreenIntent actually launches
-            // the activity), but on an unlocked screen Android shows a
-            // heads-up banner instead — and a silenced channel means no
-            // sound. Set the system ringtone with USAGE_NOTIFICATION_RINGTONE
-            // so the heads-up plays a real ring sound. IncomingCallActivity
-            // cancels this notification when it appears, so we never
-            // double-ring.
-            Uri ringtoneUri = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_RINGTONE);
-            AudioAttributes audioAttrs = new AudioAttributes.Builder()
-                    .setUsage(AudioAttributes.USAGE_NOTIFICATION_RINGTONE)
-                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
-                    .build();
-            channel.setSound(ringtoneUri, audioAttrs);
-            channel.enableVibration(true);
-            channel.setVibrationPattern(new long[]{0, 1000, 500, 1000, 500});
-            channel.setBypassDnd(true);
-            channel.setLockscreenVisibility(NotificationCompat.VISIBILITY_PUBLIC);
-
-            NotificationManager notificationManager = getSystemService(NotificationManager.class);
-            notificationManager.createNotificationChannel(channel);
-        }
-    }
-
     // ============================================================
     // HELPERS
     // ============================================================
 
     private boolean isAppInForeground() {
-        ActivityManager am = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
-        if (am == null) return false;
-        for (ActivityManager.RunningAppProcessInfo process : am.getRunningAppProcesses()) {
-            if (process.processName.equals(getPackageName())) {
-                return process.importance == ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
-            }
-        }
-        return false;
+        return AppLifecycleTracker.isAppInForeground();
     }
 }
@@ -0,0 +1,45 @@
+package com.zemichat.app;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+
+import com.getcapacitor.Bridge;
+import com.getcapacitor.BridgeWebViewClient;
+
+/**
+ * Capacitor's WebViewClient plus two native shortcuts: the hashed chunks of
+ * the bundled app are served from BundleAssetServer once extracted, and
+ * Supabase Storage requests are answered by MediaCache. Everything else
+ * (index.html, the API, Realtime) goes through the bridge exactly as before.
+ */
+public class ZemichatWebViewClient extends BridgeWebViewClient {
+
+    private final String appHost;
+    private final BundleAssetServer bundleAssets;
+    private final MediaCache mediaCache;
+
+    public ZemichatWebViewClient(Bridge bridge) {
+        super(bridge);
+        this.appHost = bridge.getHost();
+        this.bundleAssets = BundleAssetServer.get(bridge.getContext());
+        this.mediaCache = MediaCache.get(bridge.getContext());
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        WebResourceResponse response = appHost.equals(uri.getHost())
+                ? bundleAssets.serve(uri)
+                : mediaCache.intercept(request);
+        return response != null ? response : super.shouldInterceptRequest(view, request);
+    }
+
+    @Override
+    public void onPageFinished(WebView view, String url) {
+        super.onPageFinished(view, url);
+        // Extract only once the app is up, so it never competes with a cold start
+        bundleAssets.prepare();
+    }
+}
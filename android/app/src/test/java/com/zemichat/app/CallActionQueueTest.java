@@ -0,0 +1,94 @@
+package com.zemichat.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Delivery of native call actions to JS: pushed to a listener when one
+ * accepts, queued otherwise, and never delivered twice.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CallActionQueueTest {
+
+    private final List<CallNotificationPlugin.CallAction> delivered = new ArrayList<>();
+    private final CallActionQueue.Listener listener = action -> delivered.add(action);
+
+    @Before
+    public void setUp() {
+        while (CallActionQueue.poll() != null) {
+            // Drain anything another test left behind
+        }
+    }
+
+    @After
+    public void tearDown() {
+        CallActionQueue.clearListener(listener);
+    }
+
+    @Test
+    public void queuedUntilPolledWithoutListener() {
+        CallNotificationPlugin.CallAction action = answer(newId());
+        assertTrue(CallActionQueue.offer(action));
+        assertSame(action, CallActionQueue.poll());
+        assertNull(CallActionQueue.poll());
+    }
+
+    @Test
+    public void deliveredToListenerInsteadOfQueued() {
+        CallActionQueue.setListener(listener);
+        CallNotificationPlugin.CallAction action = answer(newId());
+        assertTrue(CallActionQueue.offer(action));
+        assertEquals(1, delivered.size());
+        assertNull(CallActionQueue.poll());
+    }
+
+    @Test
+    public void sameAnswerTwiceIsDropped() {
+        String id = newId();
+        assertTrue(CallActionQueue.offer(answer(id)));
+        assertFalse(CallActionQueue.offer(answer(id)));
+    }
+
+    @Test
+    public void sameAnswerAfterPendingExpiryIsStillDropped() {
+        String id = newId();
+        assertTrue(CallActionQueue.offer(answer(id)));
+        ShadowSystemClock.advanceBy(Duration.ofMillis(CallActionQueue.EXPIRY_MS * 2));
+        assertNull(CallActionQueue.poll());
+        assertFalse(CallActionQueue.offer(answer(id)));
+    }
+
+    @Test
+    public void offerThroughput() throws Exception {
+        CallActionQueue.setListener(listener);
+        Perf.Result result = Perf.measure("CallActionQueue.offer", 5_000, 20_000, i -> {
+            delivered.clear();
+            CallActionQueue.offer(answer("perf-" + i));
+        });
+        Perf.assertNanosPerOp(result, 50_000);
+    }
+
+    private static CallNotificationPlugin.CallAction answer(String callLogId) {
+        return new CallNotificationPlugin.CallAction(
+                "answer", callLogId, "chat", "voice", "caller", "Caller", null);
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.zemichat.app;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.UUID;
+
+/**
+ * Idempotency rules for call pushes, and the per-push cost of checking them.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CallPushDeduperTest {
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    @Test
+    public void duplicateDeliveryIsDropped() {
+        String id = newId();
+        assertTrue(accept(CallPushDeduper.TYPE_INCOMING, id, 0));
+        assertFalse(accept(CallPushDeduper.TYPE_INCOMING, id, 0));
+    }
+
+    @Test
+    public void ringAfterCancelIsDropped() {
+        String id = newId();
+        assertTrue(accept(CallPushDeduper.TYPE_CANCELLED, id, 0));
+        assertFalse(accept(CallPushDeduper.TYPE_INCOMING, id, 0));
+    }
+
+    @Test
+    public void cancelAfterRingIsKept() {
+        String id = newId();
+        assertTrue(accept(CallPushDeduper.TYPE_INCOMING, id, 0));
+        assertTrue(accept(CallPushDeduper.TYPE_CANCELLED, id, 0));
+    }
+
+    @Test
+    public void staleRingIsDropped() {
+        long sentAt = System.currentTimeMillis() - CallPushDeduper.MAX_RING_AGE_MS
+                - CallPushDeduper.CLOCK_SKEW_TOLERANCE_MS - 1_000;
+        assertFalse(accept(CallPushDeduper.TYPE_INCOMING, newId(), sentAt));
+    }
+
+    @Test
+    public void ringOnFastDeviceClockIsKept() {
+        // Device clock five minutes ahead of the server
+        long sentAt = System.currentTimeMillis() - 5 * 60_000;
+        assertTrue(accept(CallPushDeduper.TYPE_INCOMING, newId(), sentAt));
+    }
+
+    @Test
+    public void missingCallLogIdIsAlwaysAccepted() {
+        assertTrue(accept(CallPushDeduper.TYPE_INCOMING, null, 0));
+        assertTrue(accept(CallPushDeduper.TYPE_INCOMING, null, 0));
+    }
+
+    @Test
+    public void acceptThroughput() throws Exception {
+        Perf.Result result = Perf.measure("CallPushDeduper.accept", 2_000, 5_000,
+                i -> accept(CallPushDeduper.TYPE_INCOMING, "perf-" + i, 0));
+        // A 32-slot scan plus one SharedPreferences apply()
+        Perf.assertNanosPerOp(result, 200_000);
+    }
+
+    private boolean accept(String type, String callLogId, long sentAt) {
+        return CallPushDeduper.accept(context, type, callLogId, sentAt);
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,100 @@
+package com.zemichat.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * CallRegistry's state machine and id derivation, plus a throughput budget
+ * for the ring → transition path every incoming call push takes.
+ *
+ * The registry is process-wide, so every test uses fresh callLogIds.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class CallRegistryTest {
+
+    @Test
+    public void ring_onlyOncePerCall() {
+        String id = newId();
+        assertTrue(CallRegistry.ring(id));
+        assertFalse(CallRegistry.ring(id));
+        assertEquals(CallRegistry.State.RINGING, CallRegistry.state(id));
+    }
+
+    @Test
+    public void transition_onlyOutOfRinging() {
+        String id = newId();
+        CallRegistry.ring(id);
+        assertTrue(CallRegistry.transition(id, CallRegistry.State.ANSWERED));
+        assertFalse(CallRegistry.transition(id, CallRegistry.State.DECLINED));
+        assertEquals(CallRegistry.State.ANSWERED, CallRegistry.state(id));
+    }
+
+    @Test
+    public void transition_ofUnknownCallBlocksALateRing() {
+        String id = newId();
+        assertTrue(CallRegistry.transition(id, CallRegistry.State.CANCELLED));
+        assertFalse(CallRegistry.ring(id));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void transition_backToRingingIsRejected() {
+        CallRegistry.transition(newId(), CallRegistry.State.RINGING);
+    }
+
+    @Test
+    public void ringingSince_isZeroOnceTheCallEnds() {
+        String id = newId();
+        CallRegistry.ring(id);
+        assertTrue(CallRegistry.ringingSince(id) > 0);
+        CallRegistry.transition(id, CallRegistry.State.TIMED_OUT);
+        assertEquals(0, CallRegistry.ringingSince(id));
+        assertNull(CallRegistry.state(null));
+    }
+
+    @Test
+    public void notificationIds_stayClearOfLegacyAndMessageIds() {
+        Set<Integer> codes = new HashSet<>();
+        for (int i = 0; i < 1_000; i++) {
+            String id = newId();
+            int notificationId = CallRegistry.notificationId(id);
+            assertNotEquals(CallRegistry.LEGACY_NOTIFICATION_ID, notificationId);
+            assertTrue(notificationId >= 0x40000000);
+
+            // Request codes for one call never collide with each other
+            codes.clear();
+            codes.add(CallRegistry.requestCode(id, CallRegistry.REQUEST_FULL_SCREEN));
+            codes.add(CallRegistry.requestCode(id, CallRegistry.REQUEST_ANSWER));
+            codes.add(CallRegistry.requestCode(id, CallRegistry.REQUEST_DECLINE));
+            assertEquals(3, codes.size());
+        }
+        assertEquals(CallRegistry.LEGACY_NOTIFICATION_ID, CallRegistry.notificationId(null));
+    }
+
+    @Test
+    public void ringAndTransition_throughput() throws Exception {
+        String[] ids = new String[200_000];
+        for (int i = 0; i < ids.length; i++) ids[i] = newId();
+
+        Perf.Result result = Perf.measure("CallRegistry ring+transition", 20_000, 30_000, i -> {
+            CallRegistry.ring(ids[i]);
+            CallRegistry.transition(ids[i], CallRegistry.State.CANCELLED);
+        });
+        // Bounded at MAX_ENTRIES, so this must not grow with call history
+        Perf.assertNanosPerOp(result, 50_000);
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString();
+    }
+}
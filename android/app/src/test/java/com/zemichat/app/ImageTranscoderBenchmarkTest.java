@@ -0,0 +1,96 @@
+package com.zemichat.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.os.Build;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+
+/**
+ * ImageTranscoder.transcode on a 12 MP camera-sized JPEG, with Robolectric's
+ * native graphics so the decode and encode are real Skia work rather than
+ * shadow no-ops.
+ *
+ * Only time is budgeted: bitmap pixels live in native memory on these API
+ * levels, so the JVM allocation counter says nothing about whether the
+ * full-resolution bitmap was avoided. The output size checks cover that.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.P)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ImageTranscoderBenchmarkTest {
+
+    // Exactly twice the default edge, so inSampleSize alone lands on it
+    private static final int SOURCE_WIDTH = 4096;
+    private static final int SOURCE_HEIGHT = 3072;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private File source;
+
+    @Before
+    public void setUp() throws Exception {
+        source = tmp.newFile("camera.jpg");
+        Bitmap bitmap = Bitmap.createBitmap(SOURCE_WIDTH, SOURCE_HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        Random random = new Random(42);
+        canvas.drawColor(0xFF808080);
+        for (int i = 0; i < 400; i++) {
+            paint.setColor(0xFF000000 | random.nextInt(0xFFFFFF));
+            canvas.drawCircle(random.nextInt(SOURCE_WIDTH), random.nextInt(SOURCE_HEIGHT),
+                    50 + random.nextInt(400), paint);
+        }
+        try (FileOutputStream out = new FileOutputStream(source)) {
+            assertTrue(bitmap.compress(Bitmap.CompressFormat.JPEG, 95, out));
+        }
+        bitmap.recycle();
+    }
+
+    @Test
+    public void transcode_downscalesToTheDefaultEdge() throws Exception {
+        File dst = new File(tmp.getRoot(), "out.jpg");
+        ImageTranscoder.Result result = ImageTranscoder.transcode(source, "image/jpeg", dst,
+                ImageTranscoder.DEFAULT_MAX_EDGE, ImageTranscoder.DEFAULT_QUALITY);
+
+        assertNotNull(result);
+        assertEquals(ImageTranscoder.DEFAULT_MAX_EDGE, result.width);
+        assertEquals(ImageTranscoder.DEFAULT_MAX_EDGE * SOURCE_HEIGHT / SOURCE_WIDTH, result.height);
+        assertTrue(result.size < source.length());
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(dst.getPath(), bounds);
+        assertEquals(result.width, bounds.outWidth);
+    }
+
+    @Test
+    public void transcode_time() throws Exception {
+        File dst = new File(tmp.getRoot(), "out.jpg");
+        Perf.Result result = Perf.measure("ImageTranscoder.transcode 12 MP", 1, 1, i -> {
+            dst.delete();
+            ImageTranscoder.transcode(source, "image/jpeg", dst,
+                    ImageTranscoder.DEFAULT_MAX_EDGE, ImageTranscoder.DEFAULT_QUALITY);
+        });
+        // A sampled decode plus a 3 MP encode; a laptop does it in a fraction
+        Perf.assertNanosPerOp(result, 2_000_000_000L);
+    }
+}
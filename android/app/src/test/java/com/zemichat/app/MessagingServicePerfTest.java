@@ -0,0 +1,123 @@
+package com.zemichat.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowNotificationManager;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ZemichatMessagingService.onMessageReceived and notification building
+ * under Robolectric: what gets posted, and how long and how much heap
+ * each push costs.
+ *
+ * Runs on API 25 so incoming calls take the plain notification path —
+ * Robolectric has no Telecom ConnectionService to bind on newer levels.
+ * The budgets are loose: they exist to catch order-of-magnitude
+ * regressions (a blocking call or a bitmap decode on the push thread),
+ * not to track small drifts.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.N_MR1)
+public class MessagingServicePerfTest {
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private ZemichatMessagingService service;
+    private ShadowNotificationManager notifications;
+
+    @Before
+    public void setUp() {
+        service = Robolectric.setupService(ZemichatMessagingService.class);
+        notifications = shadowOf((NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE));
+    }
+
+    @Test
+    public void incomingCalls_eachGetTheirOwnNotification() {
+        String first = Pushes.newId();
+        String second = Pushes.newId();
+        service.onMessageReceived(Pushes.incomingCall(first));
+        service.onMessageReceived(Pushes.incomingCall(second));
+        service.onMessageReceived(Pushes.incomingCall(first)); // Redelivery
+
+        assertEquals(2, notifications.size());
+        assertEquals(CallRegistry.State.RINGING, CallRegistry.state(first));
+    }
+
+    @Test
+    public void callCancelled_removesOnlyThatCall() {
+        String first = Pushes.newId();
+        String second = Pushes.newId();
+        service.onMessageReceived(Pushes.incomingCall(first));
+        service.onMessageReceived(Pushes.incomingCall(second));
+        service.onMessageReceived(Pushes.callCancelled(first));
+
+        assertEquals(1, notifications.size());
+        assertEquals(CallRegistry.State.CANCELLED, CallRegistry.state(first));
+        assertEquals(CallRegistry.State.RINGING, CallRegistry.state(second));
+    }
+
+    @Test
+    public void messageBurst_collapsesToOneNotificationPerChat() {
+        String[] chats = {Pushes.newId(), Pushes.newId(), Pushes.newId()};
+        for (int i = 0; i < 50; i++) {
+            service.onMessageReceived(Pushes.message(chats[i % chats.length], Pushes.newId(), "msg " + i));
+        }
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(5));
+
+        // One MessagingStyle notification per chat plus the group summary
+        assertEquals(chats.length + 1, notifications.size());
+        for (String chatId : chats) {
+            Notification n = notifications.getNotification(chatId, 1);
+            assertEquals(8, n.extras.getParcelableArray(Notification.EXTRA_MESSAGES).length);
+        }
+    }
+
+    @Test
+    public void incomingCallPush_budget() throws Exception {
+        Perf.Result result = Perf.measure("onMessageReceived(incoming_call)", 50, 200,
+                i -> service.onMessageReceived(Pushes.incomingCall(Pushes.newId())));
+        Perf.assertNanosPerOp(result, 20_000_000);
+        Perf.assertBytesPerOp(result, 4 * 1024 * 1024);
+    }
+
+    @Test
+    public void messagePush_budget() throws Exception {
+        String chatId = Pushes.newId();
+        Perf.Result result = Perf.measure("onMessageReceived(new_message)", 50, 200,
+                i -> service.onMessageReceived(Pushes.message(chatId, Pushes.newId(), "msg " + i)));
+        Perf.assertNanosPerOp(result, 20_000_000);
+        Perf.assertBytesPerOp(result, 4 * 1024 * 1024);
+    }
+
+    @Test
+    public void callNotificationBuild_budget() throws Exception {
+        Map<String, String> data = new HashMap<>();
+        data.put("callerName", "Alva");
+        data.put("callType", "video");
+        data.put("chatId", "chat");
+        data.put("callerId", "caller");
+        Perf.Result result = Perf.measure("IncomingCallNotifier.show", 50, 200, i -> {
+            data.put("callLogId", "perf-" + i);
+            IncomingCallNotifier.show(context, data);
+        });
+        Perf.assertNanosPerOp(result, 15_000_000);
+        Perf.assertBytesPerOp(result, 4 * 1024 * 1024);
+    }
+}
@@ -0,0 +1,103 @@
+package com.zemichat.app;
+
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Minimal JMH-style harness for the perf tests: warm-up rounds, then
+ * several measured rounds, reporting the median time per operation and the
+ * bytes allocated per operation on the calling thread.
+ *
+ * Thresholds are budgets, not targets — set well above what a laptop does so
+ * only real regressions fail. Slow CI machines can widen every time budget
+ * with -Pzemichat.perfScale=2 (passed through as a system property).
+ * Allocation budgets are not scaled; they don't depend on the machine.
+ * Add -Pzemichat.perfLog to print the "[perf]" lines (and replay reports)
+ * to the Gradle output; without it nothing is written.
+ */
+final class Perf {
+
+    interface Op {
+        void run(int i) throws Exception;
+    }
+
+    static final double SCALE = Double.parseDouble(System.getProperty("zemichat.perfScale", "1"));
+    static final boolean LOG = Boolean.getBoolean("zemichat.perfLog");
+
+    private static final int ROUNDS = 5;
+
+    private Perf() {
+    }
+
+    static Result measure(String name, int warmupOps, int opsPerRound, Op op) throws Exception {
+        for (int i = 0; i < warmupOps; i++) op.run(i);
+
+        long[] nanos = new long[ROUNDS];
+        long allocated = 0;
+        int i = warmupOps;
+        for (int r = 0; r < ROUNDS; r++) {
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int n = 0; n < opsPerRound; n++) op.run(i++);
+            nanos[r] = System.nanoTime() - start;
+            long bytesAfter = allocatedBytes();
+            allocated += bytesAfter >= 0 && bytesBefore >= 0 ? bytesAfter - bytesBefore : 0;
+        }
+        Arrays.sort(nanos);
+
+        Result result = new Result(name,
+                nanos[ROUNDS / 2] / (double) opsPerRound,
+                allocatedBytes() >= 0 ? allocated / (double) (ROUNDS * opsPerRound) : -1);
+        log(result);
+        return result;
+    }
+
+    static void log(Object report) {
+        if (LOG) System.out.println(report);
+    }
+
+    static void assertNanosPerOp(Result result, double budget) {
+        double scaled = budget * SCALE;
+        assertTrue(String.format(Locale.ROOT, "%s: %.0f ns/op over budget of %.0f ns/op",
+                result.name, result.nanosPerOp, scaled), result.nanosPerOp <= scaled);
+    }
+
+    static void assertBytesPerOp(Result result, double budget) {
+        if (result.bytesPerOp < 0) return; // JVM can't count allocations
+        assertTrue(String.format(Locale.ROOT, "%s: %.0f B/op over budget of %.0f B/op",
+                result.name, result.bytesPerOp, budget), result.bytesPerOp <= budget);
+    }
+
+    @SuppressWarnings("restriction")
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    static final class Result {
+        final String name;
+        final double nanosPerOp;
+        final double bytesPerOp;
+
+        Result(String name, double nanosPerOp, double bytesPerOp) {
+            this.name = name;
+            this.nanosPerOp = nanosPerOp;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "[perf] %s: %.0f ns/op, %.0f B/op", name, nanosPerOp, bytesPerOp);
+        }
+    }
+}
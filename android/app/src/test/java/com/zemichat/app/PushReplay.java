@@ -0,0 +1,230 @@
+package com.zemichat.app;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Looper;
+import android.service.notification.StatusBarNotification;
+
+import com.google.firebase.messaging.RemoteMessage;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays a sequence of FCM data messages into ZemichatMessagingService
+ * in-process, under Robolectric's paused main looper, so bursts and
+ * reorderings can be tried without Firebase or a device.
+ *
+ * A replay is a list of pushes, each with an offset in ms from the start.
+ * The offsets can come from a recording (see fromJson), from a fixed rate,
+ * and the delivery order can be shuffled or reversed to mimic FCM's lack
+ * of ordering. Between pushes the main looper (and with it SystemClock) is
+ * advanced by the gap, so coalescing windows and timeouts behave as they
+ * would in real time — without the test taking that long.
+ *
+ * The report has per-push handling latency (wall clock around
+ * onMessageReceived), how many notifications were posted or updated, and
+ * the notifications left in the shade at the end.
+ */
+final class PushReplay {
+
+    enum Order { AS_RECORDED, REVERSED, SHUFFLED }
+
+    private final List<Long> offsets = new ArrayList<>();
+    private final List<RemoteMessage> messages = new ArrayList<>();
+    private Order order = Order.AS_RECORDED;
+    private long seed = 1;
+    private long settleMs = 5_000;
+
+    /**
+     * Add a push at an offset (ms) from the start of the replay.
+     */
+    PushReplay at(long offsetMs, RemoteMessage message) {
+        offsets.add(offsetMs);
+        messages.add(message);
+        return this;
+    }
+
+    /**
+     * Append pushes spaced evenly at perSecond, after anything already added.
+     */
+    PushReplay atRate(double perSecond, List<RemoteMessage> pushes) {
+        long start = offsets.isEmpty() ? 0 : offsets.get(offsets.size() - 1);
+        double gap = 1_000 / perSecond;
+        for (int i = 0; i < pushes.size(); i++) {
+            at(start + Math.round(i * gap), pushes.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Deliver the same time slots in a different order. The times stay put;
+     * which push lands in which slot changes.
+     */
+    PushReplay order(Order order, long seed) {
+        this.order = order;
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * How long to run the looper after the last push, for delayed flushes.
+     */
+    PushReplay settle(long ms) {
+        this.settleMs = ms;
+        return this;
+    }
+
+    /**
+     * Load a recorded replay: a JSON array of {"at": ms, "data": {...}}.
+     * The placeholder "$now" in a data value is replaced with the current
+     * epoch ms plus the push's offset, so recorded sentAt values stay fresh.
+     */
+    static PushReplay fromJson(String json) throws JSONException {
+        PushReplay replay = new PushReplay();
+        JSONArray array = new JSONArray(json);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject entry = array.getJSONObject(i);
+            long at = entry.getLong("at");
+            JSONObject data = entry.getJSONObject("data");
+            Map<String, String> map = new HashMap<>();
+            Iterator<String> keys = data.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                String value = data.getString(key);
+                map.put(key, "$now".equals(value) ? String.valueOf(now + at) : value);
+            }
+            replay.at(at, new RemoteMessage.Builder("zemichat@fcm.googleapis.com")
+                    .setMessageId(Pushes.newId())
+                    .setData(map)
+                    .build());
+        }
+        return replay;
+    }
+
+    static PushReplay fromResource(String name) throws IOException, JSONException {
+        try (InputStream in = PushReplay.class.getClassLoader().getResourceAsStream("push-replays/" + name)) {
+            if (in == null) throw new IOException("No replay " + name);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) out.write(buffer, 0, n);
+            return fromJson(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    Report run(ZemichatMessagingService service) {
+        Context context = service.getApplicationContext();
+        NotificationManager nm = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+
+        List<RemoteMessage> delivery = new ArrayList<>(messages);
+        if (order == Order.REVERSED) Collections.reverse(delivery);
+        if (order == Order.SHUFFLED) Collections.shuffle(delivery, new Random(seed));
+        List<Long> slots = new ArrayList<>(offsets);
+        Collections.sort(slots);
+
+        Report report = new Report(delivery.size());
+        Map<Notification, Boolean> seen = new IdentityHashMap<>();
+        countPosts(nm, seen); // Whatever was up before the replay doesn't count
+
+        long clock = 0;
+        for (int i = 0; i < delivery.size(); i++) {
+            long slot = slots.get(i);
+            if (slot > clock) {
+                shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(slot - clock));
+                clock = slot;
+            }
+            report.posted += countPosts(nm, seen);
+
+            long start = System.nanoTime();
+            service.onMessageReceived(delivery.get(i));
+            report.latencyNanos[i] = System.nanoTime() - start;
+            report.posted += countPosts(nm, seen);
+        }
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(settleMs));
+        report.posted += countPosts(nm, seen);
+
+        for (StatusBarNotification sbn : nm.getActiveNotifications()) {
+            report.active.add(sbn);
+        }
+        return report;
+    }
+
+    /**
+     * Notifications posted or updated since the last call: every notify()
+     * leaves a new Notification object in the shade.
+     */
+    private static int countPosts(NotificationManager nm, Map<Notification, Boolean> seen) {
+        int posted = 0;
+        for (StatusBarNotification sbn : nm.getActiveNotifications()) {
+            if (seen.put(sbn.getNotification(), Boolean.TRUE) == null) posted++;
+        }
+        return posted;
+    }
+
+    static final class Report {
+        final long[] latencyNanos;
+        final List<StatusBarNotification> active = new ArrayList<>();
+        int posted;
+
+        Report(int pushes) {
+            latencyNanos = new long[pushes];
+        }
+
+        long percentileMicros(double q) {
+            if (latencyNanos.length == 0) return 0;
+            long[] sorted = latencyNanos.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(q * sorted.length) - 1);
+            return sorted[Math.max(0, index)] / 1_000;
+        }
+
+        /**
+         * Active notifications with the given tag (message notifications are
+         * tagged with their chatId).
+         */
+        int activeWithTag(String tag) {
+            int count = 0;
+            for (StatusBarNotification sbn : active) {
+                if (tag.equals(sbn.getTag())) count++;
+            }
+            return count;
+        }
+
+        boolean isActive(int id) {
+            for (StatusBarNotification sbn : active) {
+                if (sbn.getTag() == null && sbn.getId() == id) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "[replay] %d pushes: p50 %d µs, p99 %d µs, max %d µs; %d posted, %d active",
+                    latencyNanos.length, percentileMicros(0.50), percentileMicros(0.99),
+                    percentileMicros(1.0), posted, active.size());
+        }
+    }
+}
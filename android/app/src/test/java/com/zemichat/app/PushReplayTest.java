@@ -0,0 +1,113 @@
+package com.zemichat.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Build;
+
+import com.google.firebase.messaging.RemoteMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Burst and reordering scenarios replayed through PushReplay. Each one
+ * checks the final notification state and bounds how many times the shade
+ * was touched; the latency report is printed for -Pzemichat.perfLog runs.
+ *
+ * API 25 for the same reason as MessagingServicePerfTest: no Telecom.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.N_MR1)
+public class PushReplayTest {
+
+    private ZemichatMessagingService service;
+
+    @Before
+    public void setUp() {
+        service = Robolectric.setupService(ZemichatMessagingService.class);
+    }
+
+    @Test
+    public void fiftyMessagesInOneSecond_coalescePerChat() {
+        String[] chats = {Pushes.newId(), Pushes.newId(), Pushes.newId(), Pushes.newId(), Pushes.newId()};
+        List<RemoteMessage> pushes = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pushes.add(Pushes.message(chats[i % chats.length], Pushes.newId(), "msg " + i));
+        }
+
+        PushReplay.Report report = new PushReplay().atRate(50, pushes).run(service);
+        Perf.log(report);
+
+        for (String chatId : chats) assertEquals(1, report.activeWithTag(chatId));
+        assertEquals(chats.length + 1, report.active.size()); // + group summary
+        // Without coalescing this would be 50 chat posts plus 50 summaries.
+        // With it: the first message per chat, one flush per chat per 1.5 s
+        // window, and a summary alongside each of those.
+        assertTrue("Posted " + report.posted, report.posted <= chats.length * 2 * 2);
+        // p90: the first push of a run also pays for class loading
+        assertTrue(report.percentileMicros(0.90) < 20_000 * Perf.SCALE);
+    }
+
+    @Test
+    public void shuffledCallStorm_endsWithOnlyUncancelledCallsRinging() {
+        List<String> cancelled = new ArrayList<>();
+        List<String> kept = new ArrayList<>();
+        List<RemoteMessage> pushes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String id = Pushes.newId();
+            pushes.add(Pushes.incomingCall(id));
+            pushes.add(Pushes.incomingCall(id)); // FCM redelivery
+            if (i % 2 == 0) {
+                pushes.add(Pushes.callCancelled(id));
+                cancelled.add(id);
+            } else {
+                kept.add(id);
+            }
+        }
+
+        for (long seed = 1; seed <= 5; seed++) {
+            PushReplay.Report report = new PushReplay()
+                    .atRate(200, pushes)
+                    .order(PushReplay.Order.SHUFFLED, seed)
+                    .run(service);
+            Perf.log(report);
+
+            // Whatever the order, a cancelled call never ends up ringing
+            for (String id : cancelled) {
+                assertFalse(report.isActive(CallRegistry.notificationId(id)));
+                assertEquals(CallRegistry.State.CANCELLED, CallRegistry.state(id));
+            }
+            for (String id : kept) {
+                assertTrue(report.isActive(CallRegistry.notificationId(id)));
+            }
+            // Only the first shuffle can post anything; later ones are all replays
+            if (seed > 1) assertEquals(0, report.posted);
+        }
+    }
+
+    @Test
+    public void recordedCallStorm() throws Exception {
+        PushReplay.Report report = PushReplay.fromResource("call-storm.json").run(service);
+        Perf.log(report);
+
+        // call-a: cancelled, then its ring redelivered late — stays down
+        assertFalse(report.isActive(CallRegistry.notificationId("call-a")));
+        // call-b: cancel overtook the ring — never shown
+        assertFalse(report.isActive(CallRegistry.notificationId("call-b")));
+        assertEquals(CallRegistry.State.CANCELLED, CallRegistry.state("call-b"));
+        // call-c: rang once despite the duplicate
+        assertTrue(report.isActive(CallRegistry.notificationId("call-c")));
+        // chat-m: one conversation notification for the burst
+        assertEquals(1, report.activeWithTag("chat-m"));
+        assertEquals(3, report.active.size()); // call-c, chat-m, summary
+    }
+}
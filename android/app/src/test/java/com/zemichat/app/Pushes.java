@@ -0,0 +1,63 @@
+package com.zemichat.app;
+
+import com.google.firebase.messaging.RemoteMessage;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Synthetic FCM data messages shaped like the ones call-push and send-push
+ * send, for feeding ZemichatMessagingService in-process.
+ */
+final class Pushes {
+
+    private Pushes() {
+    }
+
+    static RemoteMessage incomingCall(String callLogId) {
+        Map<String, String> data = new HashMap<>();
+        data.put("type", "incoming_call");
+        data.put("callLogId", callLogId);
+        data.put("chatId", "chat-" + callLogId);
+        data.put("callType", "voice");
+        data.put("callerId", "caller-" + callLogId);
+        data.put("callerName", "Alva");
+        data.put("callerAvatar", "");
+        data.put("sentAt", String.valueOf(System.currentTimeMillis()));
+        return build(data);
+    }
+
+    static RemoteMessage callCancelled(String callLogId) {
+        Map<String, String> data = new HashMap<>();
+        data.put("type", "call_cancelled");
+        data.put("callLogId", callLogId);
+        data.put("sentAt", String.valueOf(System.currentTimeMillis()));
+        return build(data);
+    }
+
+    static RemoteMessage message(String chatId, String messageId, String body) {
+        Map<String, String> data = new HashMap<>();
+        data.put("type", "new_message");
+        data.put("chatId", chatId);
+        data.put("messageId", messageId);
+        data.put("body", body);
+        data.put("senderId", "sender-" + chatId);
+        data.put("senderName", "Vilgot");
+        data.put("isGroup", "false");
+        data.put("chatName", "");
+        data.put("sentAt", String.valueOf(System.currentTimeMillis()));
+        return build(data);
+    }
+
+    static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    private static RemoteMessage build(Map<String, String> data) {
+        return new RemoteMessage.Builder("zemichat@fcm.googleapis.com")
+                .setMessageId(newId())
+                .setData(data)
+                .build();
+    }
+}
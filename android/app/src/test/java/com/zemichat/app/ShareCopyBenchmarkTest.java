@@ -0,0 +1,96 @@
+package com.zemichat.app;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.Random;
+
+/**
+ * The copy-and-hash loop behind ShareTargetPlugin.readUri, on a plain JVM.
+ * SharedFileStore.transfer and toHex only touch java.nio and java.security,
+ * so no Android runtime is needed.
+ */
+public class ShareCopyBenchmarkTest {
+
+    private static final int SOURCE_BYTES = 8 * 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private byte[] source;
+    private FileOutputStream out;
+    private FileChannel dst;
+
+    @Before
+    public void setUp() throws Exception {
+        source = new byte[SOURCE_BYTES];
+        new Random(42).nextBytes(source);
+        out = new FileOutputStream(tmp.newFile("copy.bin"));
+        dst = out.getChannel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        out.close();
+    }
+
+    @Test
+    public void transfer_copiesAndHashesEveryByte() throws Exception {
+        MessageDigest digest = SharedFileStore.newSha256();
+        long copied = SharedFileStore.transfer(channel(source), dst, Long.MAX_VALUE, digest);
+
+        assertEquals(SOURCE_BYTES, copied);
+        assertEquals(SOURCE_BYTES, dst.size());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(source), digest.digest());
+    }
+
+    @Test
+    public void transfer_stopsAtTheSizeCap() throws Exception {
+        long copied = SharedFileStore.transfer(channel(source), dst, SOURCE_BYTES - 1, SharedFileStore.newSha256());
+        assertEquals(-1, copied);
+    }
+
+    @Test
+    public void transfer_throughputAndAllocation() throws Exception {
+        Perf.Result result = Perf.measure("SharedFileStore.transfer 8 MB", 2, 3, i -> {
+            dst.truncate(0);
+            dst.position(0);
+            SharedFileStore.transfer(channel(source), dst, Long.MAX_VALUE, SharedFileStore.newSha256());
+        });
+        // ≥ 40 MB/s including SHA-256; laptops do several times that
+        Perf.assertNanosPerOp(result, SOURCE_BYTES / 40.0 * 1_000);
+        // One 64 KB buffer and the digest per copy — never the file itself
+        Perf.assertBytesPerOp(result, 256 * 1024);
+    }
+
+    @Test
+    public void toHex_matchesFormatAndStaysCheap() throws Exception {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(source);
+        StringBuilder expected = new StringBuilder();
+        for (byte b : hash) expected.append(String.format("%02x", b));
+        assertEquals(expected.toString(), SharedFileStore.toHex(hash));
+
+        Perf.Result result = Perf.measure("SharedFileStore.toHex", 10_000, 100_000,
+                i -> SharedFileStore.toHex(hash));
+        Perf.assertNanosPerOp(result, 2_000);
+        // The char[] and the String, nothing else
+        Perf.assertBytesPerOp(result, 512);
+    }
+
+    private static ReadableByteChannel channel(byte[] bytes) {
+        // A stream-backed channel, like the pipe case in SharedFileStore.copyInto
+        return Channels.newChannel(new ByteArrayInputStream(bytes));
+    }
+}
@@ -30,6 +30,12 @@ const config: CapacitorConfig = {
     PushNotifications: {
       presentationOptions: ['badge', 'sound', 'alert'],
     },
+    CallNotification: {
+      // Android: load the WebView provider and read the web bundle into
+      // the page cache while an incoming call rings, so Answer opens a
+      // warm app. Costs some battery/IO on every ring, hence opt-in.
+      prewarmOnRing: false,
+    },
   },
 };
 
@@ -17,6 +17,8 @@ import { PrivateRoute, PublicRoute } from './components/PrivateRoute';
 /* Push */
 import { setNavigationHandler } from './services/push';
 import { startMessageOutboxAutoFlush } from './services/messageOutbox';
+import { reconcileNativeOutbox } from './services/nativeOutbox';
+import { uploadCallLatencyMetrics } from './services/analytics';
 
 /* Call */
 import { IncomingCallModal, CallView, CallPiP } from './components/call';
@@ -163,6 +165,10 @@ const PushInit: React.FC = () => {
   useEffect(() => {
     if (!isAuthenticated || !hasProfile) return;
     const stop = startMessageOutboxAutoFlush();
+    // Android: pick up notification replies native couldn't deliver
+    void reconcileNativeOutbox();
+    // …and call latency recorded while the app was closed
+    void uploadCallLatencyMetrics();
     return stop;
   }, [isAuthenticated, hasProfile]);
 
@@ -19,19 +19,37 @@ import {
 } from '@ionic/react';
 import { useAuthContext } from '../contexts/AuthContext';
 import { getMyChats, type ChatWithDetails } from '../services/chat';
-import { uploadImage } from '../services/storage';
+import { uploadImage, uploadVideo, uploadDocument } from '../services/storage';
 import { sendMessage } from '../services/message';
+import { enqueueNative, isNativeOutboxAvailable } from '../services/nativeOutbox';
 import { MessageType } from '../types/database';
 import {
   initializeShareTarget,
   setShareHandler,
   sharedItemToFile,
+  sharePreviewSrc,
+  transcodeSharedItem,
   clearShareIntent,
   savePendingShare,
   loadPendingShare,
   type ShareData,
+  type SharedItem,
+  type SharePreview,
 } from '../services/shareTarget';
 
+/** Pick the storage upload and message type for a shared item's MIME type. */
+async function uploadSharedItem(item: SharedItem, chatId: string) {
+  if (item.mimeType.startsWith('image/')) {
+    const file = await sharedItemToFile(await transcodeSharedItem(item));
+    return { result: await uploadImage(file, chatId), type: MessageType.IMAGE };
+  }
+  const file = await sharedItemToFile(item);
+  if (item.mimeType.startsWith('video/')) {
+    return { result: await uploadVideo(file, chatId), type: MessageType.VIDEO };
+  }
+  return { result: await uploadDocument(file, chatId), type: MessageType.DOCUMENT };
+}
+
 const ShareTargetHandler: React.FC = () => {
   const { t } = useTranslation();
   const history = useHistory();
@@ -52,6 +70,19 @@ const ShareTargetHandler: React.FC = () => {
   // ---- Handle incoming share data ----
   const handleShareData = useCallback(
     (data: ShareData) => {
+      if (data.complete && data.rejected?.length) {
+        // One line per kind of rejection, in a stable order
+        const reasons = new Set(data.rejected.map((r) => r.reason));
+        const messages: string[] = [];
+        if (reasons.has('too_large')) messages.push(t('share.tooLarge'));
+        if (reasons.has('unreadable')) messages.push(t('share.unreadable'));
+        setToastColor('danger');
+        setToastMessage(messages.join(' '));
+        if (data.items.length === 0) {
+          clearShareIntent();
+          return;
+        }
+      }
       if (!isAuthenticated || !hasProfile) {
         savePendingShare(data);
         history.push('/login');
@@ -61,7 +92,7 @@ const ShareTargetHandler: React.FC = () => {
       setIsPickerOpen(true);
       clearShareIntent();
     },
-    [isAuthenticated, hasProfile, history]
+    [isAuthenticated, hasProfile, history, t]
   );
 
   // Keep the latest handler in a ref so the once-registered native listener
@@ -151,11 +182,15 @@ const ShareTargetHandler: React.FC = () => {
 
   // ---- Send shared content to selected chat ----
   const handleSelectChat = async (chatId: string) => {
-    if (!shareData || isSending) return;
+    if (!shareData || isSending || shareData.complete === false) return;
     setIsSending(true);
 
     try {
-      if (shareData.type === 'text') {
+      if (shareData.type === 'text' && !navigator.onLine && isNativeOutboxAvailable()) {
+        // Offline: let native deliver it, even if the app is closed right away
+        const queued = await enqueueNative({ chatId, content: shareData.text, type: MessageType.TEXT });
+        if (!queued) throw new Error('Could not queue share');
+      } else if (shareData.type === 'text') {
         const { error } = await sendMessage({
           chatId,
           content: shareData.text,
@@ -163,18 +198,16 @@ const ShareTargetHandler: React.FC = () => {
         });
         if (error) throw error;
       } else {
-        // Upload and send each image. The shared caption belongs to the set,
-        // so attach it to the first image only — not repeated on every one.
+        // Upload and send each item. The shared caption belongs to the set,
+        // so attach it to the first item only — not repeated on every one.
         for (let i = 0; i < shareData.items.length; i++) {
-          const item = shareData.items[i];
-          const file = sharedItemToFile(item);
-          const uploadResult = await uploadImage(file, chatId);
+          const { result: uploadResult, type } = await uploadSharedItem(shareData.items[i], chatId);
           if (uploadResult.error) throw uploadResult.error;
 
           const { error } = await sendMessage({
             chatId,
             content: i === 0 ? (shareData.text || undefined) : undefined,
-            type: MessageType.IMAGE,
+            type,
             mediaUrl: uploadResult.url!,
             mediaMetadata: uploadResult.metadata as unknown as Record<string, unknown>,
           });
@@ -211,26 +244,34 @@ const ShareTargetHandler: React.FC = () => {
       );
     }
 
+    // Native thumbnails arrive before the full copies; the full files are
+    // only read from disk when the user picks a chat.
+    const previews: SharePreview[] = shareData.previews ?? [];
+    const count = shareData.total ?? shareData.items.length;
+
     return (
       <div className="share-preview">
         <div className="share-preview-images">
-          {shareData.items.slice(0, 4).map((item, i) => (
-            <img
-              key={i}
-              src={`data:${item.mimeType};base64,${item.base64Data}`}
-              alt=""
-              className="share-preview-thumb"
-            />
-          ))}
-          {shareData.items.length > 4 && (
+          {previews.slice(0, 4).map((preview, i) => {
+            const src = sharePreviewSrc(preview);
+            return src ? (
+              <img key={i} src={src} alt="" className="share-preview-thumb" />
+            ) : (
+              <div key={i} className="share-preview-thumb share-preview-file">
+                {preview.fileName}
+              </div>
+            );
+          })}
+          {count > 4 && (
             <div className="share-preview-more">
-              +{shareData.items.length - 4}
+              +{count - 4}
             </div>
           )}
         </div>
-        {shareData.items.length > 1 && (
+        {count > 1 && (
           <p className="share-preview-count">
-            {shareData.items.length} {t('share.images')}
+            {count}{' '}
+            {t(shareData.type === 'image' ? 'share.images' : 'share.files')}
           </p>
         )}
       </div>
@@ -290,7 +331,7 @@ const ShareTargetHandler: React.FC = () => {
                     button
                     detail={false}
                     onClick={() => handleSelectChat(chat.id)}
-                    disabled={isSending}
+                    disabled={isSending || shareData?.complete === false}
                     className="share-picker-item"
                   >
                     <IonAvatar slot="start" className="share-picker-avatar">
@@ -343,6 +384,19 @@ const ShareTargetHandler: React.FC = () => {
               flex-shrink: 0;
             }
 
+            .share-preview-file {
+              display: flex;
+              align-items: center;
+              justify-content: center;
+              padding: 4px;
+              font-size: 0.65rem;
+              text-align: center;
+              overflow: hidden;
+              word-break: break-all;
+              background: hsl(var(--muted));
+              color: hsl(var(--foreground));
+            }
+
             .share-preview-more {
               width: 64px;
               height: 64px;
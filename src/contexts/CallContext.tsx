@@ -54,6 +54,8 @@ import {
 import {
   sendCallPush,
   getPendingCallAction,
+  onNativeCallAction,
+  type NativeCallAction,
   dismissNativeCallNotification,
   reportCallConnected,
   reportCallEnded,
@@ -66,6 +68,7 @@ import {
   stopOutgoingRingback,
 } from '../services/ringtone';
 import { setAudioRoute } from '../services/audioRouting';
+import { uploadCallLatencyMetrics } from '../services/analytics';
 import { supabase } from '../services/supabase';
 import { type CallLog } from '../types/database';
 
@@ -516,7 +519,7 @@ export function CallProvider({ children }: CallProviderProps) {
     stopRingtone();
 
     // Dismiss native call notification if present
-    dismissNativeCallNotification();
+    dismissNativeCallNotification(incomingCall.callLogId);
 
     const newCall: ActiveCall = {
       callLogId: incomingCall.callLogId,
@@ -670,7 +673,7 @@ export function CallProvider({ children }: CallProviderProps) {
   const declineCall = useCallback(async () => {
     if (!incomingCall) return;
     stopRingtone();
-    dismissNativeCallNotification();
+    dismissNativeCallNotification(incomingCall.callLogId);
     reportCallEnded(incomingCall.callLogId, 'declinedElsewhere');
     await updateCallStatus(incomingCall.callLogId, CallStatus.DECLINED);
     // Skicka DECLINE-signal så att initiator får besked att samtalet
@@ -690,6 +693,8 @@ export function CallProvider({ children }: CallProviderProps) {
 
     // Tell CallKit (iOS) that the call has ended
     reportCallEnded(activeCall.callLogId, 'remoteEnded');
+    // Android: ship how long the answer took to reach us
+    void uploadCallLatencyMetrics();
 
     // Cancel push notification on receiver's device
     sendCallPush(activeCall.chatId, activeCall.callLogId, activeCall.callType, 'cancel');
@@ -864,14 +869,15 @@ export function CallProvider({ children }: CallProviderProps) {
   // ============================================================
   // When the user taps "Answer" on the native incoming call screen,
   // the app opens with pending call data. We detect it and auto-answer.
+  // Android also pushes the action as an event while the app is running,
+  // so there is no wait for the next resume.
 
   useEffect(() => {
     if (!profile) return;
 
     let cancelled = false;
 
-    const checkNativeCallAction = async () => {
-      const action = await getPendingCallAction();
+    const handleNativeCallAction = (action: NativeCallAction | null) => {
       if (cancelled || !action || action.action !== 'answer') return;
 
       // Set incoming call state, then immediately answer
@@ -887,6 +893,12 @@ export function CallProvider({ children }: CallProviderProps) {
       setIncomingCall(incoming);
     };
 
+    const checkNativeCallAction = async () => {
+      handleNativeCallAction(await getPendingCallAction());
+    };
+
+    const unsubscribeNative = onNativeCallAction(handleNativeCallAction);
+
     // Check once on mount and also when app resumes
     checkNativeCallAction();
 
@@ -900,6 +912,7 @@ export function CallProvider({ children }: CallProviderProps) {
 
     return () => {
       cancelled = true;
+      unsubscribeNative();
       document.removeEventListener('visibilitychange', onVisibilityChange);
     };
   }, [profile]);
@@ -10,6 +10,7 @@ import {
 import type { User } from '../types/database';
 import { startPresenceUpdates, stopPresenceUpdates } from '../services/presence';
 import { clearMediaUrlCache } from '../services/storage';
+import { syncNativeCallSession } from '../services/callPush';
 
 export interface AuthState {
   isLoading: boolean;
@@ -99,6 +100,7 @@ export function useAuth(): AuthState {
 
       setSession(newSession);
       setAuthUser(newSession?.user ?? null);
+      syncNativeCallSession(newSession);
 
       if (!newSession) {
         setProfile(null);
@@ -32,6 +32,7 @@ import {
   type MessageWithSender,
 } from '../services/message';
 import { enqueueMessage } from '../services/messageOutbox';
+import { clearNativeChatNotification } from '../services/callPush';
 import {
   toggleReaction,
   getReactionsForMessages,
@@ -316,6 +317,11 @@ const ChatView: React.FC = () => {
     loadChat();
   }, [loadChat]);
 
+  // The chat is being read — drop its native notification and history
+  useEffect(() => {
+    if (chatId) clearNativeChatNotification(chatId);
+  }, [chatId]);
+
   // Fetch texter settings to determine call button visibility
   useEffect(() => {
     if (profile?.role === UserRole.TEXTER) {
@@ -1,5 +1,6 @@
 import { supabase } from './supabase';
 import { Capacitor } from '@capacitor/core';
+import { getNativeCallLatency } from './callPush';
 
 // ============================================================
 // INTERNAL ANALYTICS — GDPR-safe, no third-party tracking
@@ -23,7 +24,8 @@ type EventType =
   | 'sos_triggered'
   | 'feedback_submitted'
   | 'onboarding_completed'
-  | 'app_error';
+  | 'app_error'
+  | 'call_latency';
 
 const APP_VERSION = '1.3.1';
 
@@ -85,3 +87,30 @@ export async function trackTeamEvent(
     // Silent fail
   }
 }
+
+// Where the last native latency export stopped; reset when native restarts
+let callLatencyCursor: { bootId: string; cursor: number } | null = null;
+
+/**
+ * Upload native push-to-answer latency (Android) as one batched event:
+ * the stage events since the previous upload plus the histograms
+ * accumulated since then. No-op when nothing new was recorded.
+ */
+export async function uploadCallLatencyMetrics(): Promise<void> {
+  let metrics = await getNativeCallLatency(callLatencyCursor?.cursor ?? 0, true);
+  if (!metrics) return;
+
+  // A new native process starts its ring over at 0 — re-read its events
+  // from the start (the histograms above are already the new process's)
+  if (callLatencyCursor && callLatencyCursor.bootId !== metrics.bootId) {
+    const fresh = await getNativeCallLatency(0, false);
+    if (fresh) metrics = { ...fresh, histograms: metrics.histograms };
+  }
+  callLatencyCursor = { bootId: metrics.bootId, cursor: metrics.cursor };
+
+  if (metrics.events.length === 0 && Object.keys(metrics.histograms).length === 0) return;
+  await trackEvent('call_latency', {
+    events: metrics.events,
+    histograms: metrics.histograms,
+  });
+}
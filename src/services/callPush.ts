@@ -1,4 +1,5 @@
 import { Capacitor, registerPlugin } from '@capacitor/core';
+import type { Session } from '@supabase/supabase-js';
 import { supabase } from './supabase';
 import { saveVoipToken } from './push';
 
@@ -14,11 +15,40 @@ export interface NativeCallAction {
   callerId: string;
   callerName: string;
   callerAvatar: string;
+  /** Epoch ms when the action was taken natively (Android only). */
+  timestamp?: number;
+}
+
+/** Native push-to-answer latency export (Android, CallLatencyTracer). */
+export interface CallLatencyMetrics {
+  bootId: string;
+  cursor: number;
+  events: { callLogId: string; stage: string; at: number }[];
+  histograms: Record<
+    string,
+    { count: number; p50: number; p90: number; p99: number; buckets: { le: number; count: number }[] }
+  >;
 }
 
 interface CallNotificationPlugin {
   getPendingCallAction(): Promise<{ data: NativeCallAction | null }>;
-  dismissCallNotification(): Promise<void>;
+  dismissCallNotification(options?: { callLogId?: string }): Promise<void>;
+  clearChatNotification(options: { chatId: string }): Promise<void>;
+  reportCallConnected(options: { callLogId: string }): Promise<void>;
+  reportCallEnded(options: { callLogId: string; reason: string }): Promise<void>;
+  setBackendSession(options: {
+    url: string;
+    anonKey: string;
+    accessToken: string;
+    userId: string;
+    expiresAt?: number;
+  }): Promise<void>;
+  clearBackendSession(): Promise<void>;
+  getCallLatencyMetrics(options: { since?: number; resetHistograms?: boolean }): Promise<CallLatencyMetrics>;
+  addListener(
+    eventName: 'callAction',
+    callback: (action: NativeCallAction) => void
+  ): Promise<{ remove: () => void }>;
 }
 
 interface CallKitServicePlugin {
@@ -123,48 +153,134 @@ export async function getPendingCallAction(): Promise<NativeCallAction | null> {
   }
 }
 
+/**
+ * Subscribe to call actions pushed from native UI the moment they happen
+ * (Android). Actions taken while nothing is subscribed stay queued natively
+ * and are returned by getPendingCallAction(). Returns an unsubscribe function.
+ */
+export function onNativeCallAction(callback: (action: NativeCallAction) => void): () => void {
+  if (!CallNotification) return () => {};
+  const handle = CallNotification.addListener('callAction', callback);
+  return () => {
+    handle.then((h) => h.remove()).catch(() => {});
+  };
+}
+
 /**
  * Dismiss the native incoming call notification / CallKit call UI.
+ * On Android, passing callLogId leaves other ringing calls untouched.
  */
-export async function dismissNativeCallNotification(): Promise<void> {
-  const plugin = CallKitService || CallNotification;
-  if (!plugin) return;
+export async function dismissNativeCallNotification(callLogId?: string): Promise<void> {
+  if (CallKitService) {
+    try {
+      await CallKitService.dismissCallNotification();
+    } catch {
+      // Ignore
+    }
+    return;
+  }
+  if (!CallNotification) return;
+  try {
+    await CallNotification.dismissCallNotification({ callLogId });
+  } catch {
+    // Ignore
+  }
+}
+
+/**
+ * Remove a chat's native message notification once the chat is open, so
+ * lines already read don't come back with the next message (Android).
+ */
+export async function clearNativeChatNotification(chatId: string): Promise<void> {
+  if (!CallNotification) return;
   try {
-    await plugin.dismissCallNotification();
+    await CallNotification.clearChatNotification({ chatId });
   } catch {
     // Ignore
   }
 }
 
 // ============================================================
-// CallKit lifecycle (iOS only — no-ops on Android)
+// Native backend session (Android)
+// ============================================================
+
+/**
+ * Mirror the current Supabase session to native code so a call declined
+ * from the notification can signal the caller without booting the app.
+ * Call on every auth state change; pass null on sign-out.
+ */
+export async function syncNativeCallSession(session: Session | null): Promise<void> {
+  if (!CallNotification) return;
+  try {
+    if (!session) {
+      await CallNotification.clearBackendSession();
+      return;
+    }
+    await CallNotification.setBackendSession({
+      url: import.meta.env.VITE_SUPABASE_URL as string,
+      anonKey: import.meta.env.VITE_SUPABASE_ANON_KEY as string,
+      accessToken: session.access_token,
+      userId: session.user.id,
+      expiresAt: session.expires_at ? session.expires_at * 1000 : undefined,
+    });
+  } catch {
+    // Ignore — native decline falls back to the caller's timeout
+  }
+}
+
+// ============================================================
+// System call lifecycle (CallKit on iOS, Telecom on Android)
 // ============================================================
 
 /**
- * Tell CallKit that the call has connected (stops the ringing UI).
- * No-op on Android.
+ * Tell the system call UI that the call has connected (stops the ringing UI).
+ * On Android this releases the Telecom connection's answer timeout.
  */
 export async function reportCallConnected(callLogId: string): Promise<void> {
-  if (!CallKitService) return;
+  const plugin = CallKitService || CallNotification;
+  if (!plugin) return;
   try {
-    await CallKitService.reportCallConnected({ callLogId });
+    await plugin.reportCallConnected({ callLogId });
   } catch {
     // Ignore — non-critical
   }
 }
 
 /**
- * Tell CallKit that the call has ended (removes the call from the system call log).
- * No-op on Android.
+ * Tell the system call UI that the call has ended. On iOS this removes the
+ * call from the system call log; on Android it disconnects the Telecom
+ * connection and releases call audio focus.
  */
 export async function reportCallEnded(
   callLogId: string,
   reason: 'answeredElsewhere' | 'declinedElsewhere' | 'remoteEnded' | 'failed' = 'remoteEnded'
 ): Promise<void> {
-  if (!CallKitService) return;
+  const plugin = CallKitService || CallNotification;
+  if (!plugin) return;
   try {
-    await CallKitService.reportCallEnded({ callLogId, reason });
+    await plugin.reportCallEnded({ callLogId, reason });
   } catch {
     // Ignore — non-critical
   }
 }
+
+// ============================================================
+// Latency metrics (Android)
+// ============================================================
+
+/**
+ * Read native call latency events recorded after `since` plus the per-stage
+ * histograms (cleared after reading when resetHistograms is set).
+ * Null on platforms without native tracing.
+ */
+export async function getNativeCallLatency(
+  since = 0,
+  resetHistograms = false
+): Promise<CallLatencyMetrics | null> {
+  if (!CallNotification) return null;
+  try {
+    return await CallNotification.getCallLatencyMetrics({ since, resetHistograms });
+  } catch {
+    return null;
+  }
+}
@@ -0,0 +1,106 @@
+/**
+ * Bridge to the Android native outbox (NativeOutboxPlugin).
+ *
+ * Native code queues messages the WebView never sees — inline replies from
+ * notifications — and delivers them itself via WorkManager. JS can also hand
+ * it messages that should go out even if the app is closed right after
+ * (a text share while offline). reconcileNativeOutbox() brings the two
+ * outboxes together at session start: delivered items are dropped, items
+ * native gave up on are moved to the JS outbox so the UI can offer a retry.
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core';
+import { messageOutbox } from './messageOutbox';
+import type { Outbox, OutboxInput } from './outbox';
+
+export type NativeOutboxStatus = 'pending' | 'sent' | 'failed';
+
+export interface NativeOutboxItem {
+  id: string;
+  chatId: string;
+  type: string;
+  content?: string | null;
+  replyToId?: string | null;
+  source: 'reply' | 'share' | string;
+  attempts: number;
+  status: NativeOutboxStatus;
+  createdAt: number;
+}
+
+interface NativeOutboxPlugin {
+  enqueue(options: OutboxInput & { source?: string }): Promise<NativeOutboxItem>;
+  list(): Promise<{ items: NativeOutboxItem[] }>;
+  remove(options: { ids: string[] }): Promise<{ removed: number }>;
+  flush(): Promise<void>;
+}
+
+const NativeOutbox =
+  Capacitor.isNativePlatform() && Capacitor.getPlatform() === 'android'
+    ? registerPlugin<NativeOutboxPlugin>('NativeOutbox')
+    : null;
+
+export function isNativeOutboxAvailable(): boolean {
+  return NativeOutbox !== null;
+}
+
+/**
+ * Queue a message for native delivery. Returns null when there is no
+ * native outbox (iOS / web) — callers then send through the JS path.
+ */
+export async function enqueueNative(input: OutboxInput, source = 'share'): Promise<NativeOutboxItem | null> {
+  if (!NativeOutbox) return null;
+  try {
+    return await NativeOutbox.enqueue({ ...input, source });
+  } catch {
+    return null;
+  }
+}
+
+/**
+ * Decide what to do with each native item. Pending ones are left alone —
+ * native is still delivering them.
+ */
+export function planReconcile(items: NativeOutboxItem[]): {
+  remove: string[];
+  handOver: NativeOutboxItem[];
+} {
+  const remove: string[] = [];
+  const handOver: NativeOutboxItem[] = [];
+  for (const item of items) {
+    if (item.status === 'sent') {
+      remove.push(item.id);
+    } else if (item.status === 'failed') {
+      handOver.push(item);
+      remove.push(item.id);
+    }
+  }
+  return { remove, handOver };
+}
+
+/**
+ * Reconcile the native outbox with the JS one. Safe to call repeatedly.
+ */
+export async function reconcileNativeOutbox(outbox: Outbox = messageOutbox): Promise<void> {
+  if (!NativeOutbox) return;
+  try {
+    const { items } = await NativeOutbox.list();
+    const { remove, handOver } = planReconcile(items);
+    for (const item of handOver) {
+      // Same id — if it did land after all, the resend is a no-op
+      outbox.enqueue({
+        id: item.id,
+        chatId: item.chatId,
+        content: item.content ?? undefined,
+        type: item.type,
+        replyToId: item.replyToId ?? undefined,
+      });
+    }
+    if (remove.length > 0) {
+      await NativeOutbox.remove({ ids: remove });
+    }
+    if (items.some((i) => i.status === 'pending')) {
+      await NativeOutbox.flush();
+    }
+  } catch {
+    // Best effort — try again next session
+  }
+}
@@ -101,6 +101,7 @@ async function saveToken(token: string): Promise<void> {
         token,
         platform,
         token_type: PushTokenType.FCM,
+        native_messages: platform === PlatformType.ANDROID,
         updated_at: new Date().toISOString(),
       } as never,
       { onConflict: 'user_id,token,token_type' }
@@ -4,21 +4,74 @@ import type { PluginListenerHandle } from '@capacitor/core';
 // ---------- Types ----------
 
 export interface SharedItem {
+  /** Native cache id — the key for the chunked read API. */
+  id: string;
   mimeType: string;
   fileName: string;
-  base64Data: string;
+  /** file:// URI of the native cached copy — read it with sharedItemSrc(). */
+  path: string;
   size: number;
+  /** SHA-256 of the shared bytes — identical shares get the same hash and path. */
+  sha256?: string;
+  /** True when the bytes were already in the native cache from an earlier share. */
+  deduplicated?: boolean;
+  /** Set on items returned by transcodeSharedItem(). */
+  width?: number;
+  height?: number;
+}
+
+export interface TranscodeOptions {
+  /** Longest edge in px after downscaling. Native default 2048. */
+  maxEdge?: number;
+  /** JPEG quality 1–100. Native default 82. */
+  quality?: number;
+}
+
+export interface SharePreview {
+  mimeType: string;
+  fileName?: string;
+  /** file:// URI of a ~256px JPEG thumbnail; absent for audio/documents. */
+  thumbnailPath?: string;
+}
+
+export interface RejectedItem {
+  reason: 'too_large' | 'unreadable';
+  mimeType?: string;
+  fileName?: string;
+  size?: number;
 }
 
 export interface ShareData {
-  type: 'text' | 'image';
+  /** Native share id — progressive snapshots of one share carry the same id. */
+  shareId?: number;
+  /** Family the sending app declared; each item has its own mimeType. */
+  type: 'text' | 'image' | 'video' | 'audio' | 'file';
   text: string;
+  /** One native thumbnail per shared item, in share order — arrives before the items. */
+  previews?: SharePreview[];
+  /** Items copied so far, in share order. */
   items: SharedItem[];
+  /** Items native did not copy (e.g. over the size limit). */
+  rejected?: RejectedItem[];
+  /** Number of items in the share once every copy has finished. */
+  total?: number;
+  /** False while native is still copying items — more snapshots follow. */
+  complete?: boolean;
 }
 
 interface ShareTargetPlugin {
   getPendingShare(): Promise<{ data: ShareData | null }>;
   clearIntent(): Promise<void>;
+  openShare(options: { id: string }): Promise<{ id: string; size: number }>;
+  readChunk(options: {
+    id: string;
+    offset: number;
+    length: number;
+  }): Promise<{ data: string; bytesRead: number; eof: boolean }>;
+  closeShare(options: { id: string }): Promise<void>;
+  transcodeImage(
+    options: { path: string; mimeType: string; fileName: string } & TranscodeOptions
+  ): Promise<SharedItem>;
   addListener(
     event: 'shareReceived',
     callback: (data: ShareData) => void
@@ -76,15 +129,86 @@ export function setShareHandler(cb: ShareHandler): void {
 }
 
 /**
- * Convert a base64 SharedItem to a File object for upload.
+ * WebView-loadable URL for a shared item's native cached copy.
+ */
+export function sharedItemSrc(item: SharedItem): string {
+  return Capacitor.convertFileSrc(item.path);
+}
+
+/**
+ * WebView-loadable URL for a preview thumbnail, or null if native made none.
+ */
+export function sharePreviewSrc(preview: SharePreview): string | null {
+  return preview.thumbnailPath ? Capacitor.convertFileSrc(preview.thumbnailPath) : null;
+}
+
+/**
+ * Read a SharedItem's cached file into a File object for upload.
+ * The bytes are streamed from disk by the WebView, never through the bridge.
+ * If the WebView can't load the file, fall back to chunked bridge reads.
+ */
+export async function sharedItemToFile(item: SharedItem): Promise<File> {
+  let blob: Blob;
+  try {
+    const response = await fetch(sharedItemSrc(item));
+    if (!response.ok) throw new Error(`HTTP ${response.status}`);
+    blob = await response.blob();
+  } catch {
+    blob = await readSharedItemChunked(item);
+  }
+  return new File([blob], item.fileName, { type: item.mimeType });
+}
+
+const CHUNK_SIZE = 512 * 1024;
+
+/**
+ * Pull a cached share over the bridge in base64 chunks. Each chunk is
+ * decoded straight into its own Uint8Array, so no single large string exists.
+ */
+async function readSharedItemChunked(item: SharedItem): Promise<Blob> {
+  if (!ShareTarget) throw new Error('ShareTarget unavailable');
+
+  await ShareTarget.openShare({ id: item.id });
+  try {
+    const parts: Uint8Array[] = [];
+    let offset = 0;
+    for (;;) {
+      const chunk = await ShareTarget.readChunk({ id: item.id, offset, length: CHUNK_SIZE });
+      const binary = atob(chunk.data);
+      const bytes = new Uint8Array(binary.length);
+      for (let i = 0; i < binary.length; i++) {
+        bytes[i] = binary.charCodeAt(i);
+      }
+      parts.push(bytes);
+      offset += chunk.bytesRead;
+      if (chunk.eof || chunk.bytesRead === 0) break;
+    }
+    return new Blob(parts, { type: item.mimeType });
+  } finally {
+    await ShareTarget.closeShare({ id: item.id });
+  }
+}
+
+/**
+ * Downscale and recompress a shared image natively before upload.
+ * Returns the item unchanged if it is not an image, the native side decides
+ * it is already small enough, or transcoding fails.
  */
-export function sharedItemToFile(item: SharedItem): File {
-  const byteString = atob(item.base64Data);
-  const bytes = new Uint8Array(byteString.length);
-  for (let i = 0; i < byteString.length; i++) {
-    bytes[i] = byteString.charCodeAt(i);
+export async function transcodeSharedItem(
+  item: SharedItem,
+  options: TranscodeOptions = {}
+): Promise<SharedItem> {
+  if (!ShareTarget || !item.mimeType.startsWith('image/')) return item;
+  try {
+    return await ShareTarget.transcodeImage({
+      path: item.path,
+      mimeType: item.mimeType,
+      fileName: item.fileName,
+      ...options,
+    });
+  } catch {
+    return item;
   }
-  return new File([bytes], item.fileName, { type: item.mimeType });
 }
 
 /**
@@ -0,0 +1,31 @@
+import { describe, it, expect } from 'vitest';
+import { planReconcile, type NativeOutboxItem } from '../../services/nativeOutbox';
+
+const base: NativeOutboxItem = {
+  id: 'm1',
+  chatId: 'c1',
+  type: 'text',
+  content: 'hi',
+  source: 'reply',
+  attempts: 1,
+  status: 'pending',
+  createdAt: 0,
+};
+
+describe('nativeOutbox planReconcile', () => {
+  it('drops items native already delivered', () => {
+    const plan = planReconcile([{ ...base, status: 'sent' }]);
+    expect(plan).toEqual({ remove: ['m1'], handOver: [] });
+  });
+
+  it('hands failed items over to the JS outbox', () => {
+    const failed = { ...base, id: 'm2', status: 'failed' as const };
+    const plan = planReconcile([failed]);
+    expect(plan.handOver).toEqual([failed]);
+    expect(plan.remove).toEqual(['m2']);
+  });
+
+  it('leaves pending items with native', () => {
+    expect(planReconcile([base])).toEqual({ remove: [], handOver: [] });
+  });
+});
@@ -329,6 +329,8 @@ export interface PushToken {
   token: string;
   platform: PlatformType;
   token_type: PushTokenType;
+  /** Android: the app renders message notifications from data-only pushes */
+  native_messages: boolean;
   created_at: string;
   updated_at: string;
 }
@@ -371,12 +371,15 @@ serve(async (req) => {
         callerId: user.id,
         callerName: caller?.display_name || 'Unknown',
         callerAvatar: caller?.avatar_url || '',
+        // Lets the app drop rings that FCM delivers too late to answer
+        sentAt: String(Date.now()),
       };
     } else {
       // cancel
       callData = {
         type: 'call_cancelled',
         callLogId,
+        sentAt: String(Date.now()),
       };
     }
 
@@ -424,6 +427,9 @@ serve(async (req) => {
               data: callData,
               android: {
                 priority: 'high',
+                // FCM drops a ring it couldn't deliver in time, judged by
+                // its own clock rather than the device's
+                ...(action === 'ring' ? { ttl: '60s' } : {}),
               },
             },
           };
@@ -19,6 +19,7 @@ interface PushTokenRow {
   user_id: string;
   token: string;
   platform: string;
+  native_messages: boolean;
 }
 
 interface TexterSettingsRow {
@@ -31,13 +32,14 @@ interface TexterSettingsRow {
 interface FcmMessage {
   message: {
     token: string;
-    notification: {
+    notification?: {
       title: string;
       body: string;
     };
     data: Record<string, string>;
     android?: {
       priority: string;
+      notification?: Record<string, unknown>;
     };
     apns?: {
       headers: Record<string, string>;
@@ -317,7 +319,7 @@ serve(async (req) => {
     const [{ data: sender }, { data: chatInfo }] = await Promise.all([
       supabase
         .from('users')
-        .select('display_name')
+        .select('display_name, avatar_url')
         .eq('id', sender_id)
         .maybeSingle(),
       supabase
@@ -328,6 +330,7 @@ serve(async (req) => {
     ]);
 
     const senderName = sender?.display_name || 'Någon';
+    const senderAvatar = sender?.avatar_url || '';
     const isGroup = chatInfo?.is_group ?? false;
     const chatName = chatInfo?.name || '';
 
@@ -418,7 +421,7 @@ serve(async (req) => {
     // Get push tokens for eligible users
     const { data: tokens } = await supabase
       .from('push_tokens')
-      .select('id, user_id, token, platform')
+      .select('id, user_id, token, platform, native_messages')
       .in('user_id', eligibleUserIds);
 
     if (!tokens || tokens.length === 0) {
@@ -521,6 +524,26 @@ serve(async (req) => {
         },
       };
 
+      // Android builds that render notifications themselves (grouping,
+      // inline reply) get a data-only message with everything needed to
+      // draw it. Older builds keep the FCM-displayed notification.
+      if (tokenRow.platform === 'android' && tokenRow.native_messages) {
+        fcmMessage.message.data = {
+          chatId: chat_id,
+          messageId: message_id,
+          type: 'new_message',
+          body: notificationBody,
+          senderId: sender_id,
+          senderName,
+          senderAvatar,
+          isGroup: String(isGroup),
+          chatName,
+          sentAt: String(Date.now()),
+        };
+        delete fcmMessage.message.notification;
+        delete fcmMessage.message.android?.notification;
+      }
+
       try {
         const response = await fetch(fcmUrl, {
           method: 'POST',
@@ -0,0 +1,10 @@
+-- Native chat message notifications on Android.
+--
+-- Android builds that render message notifications themselves (per-chat
+-- MessagingStyle, grouping, inline reply) register their token with
+-- native_messages = true. send-push then sends those tokens a data-only
+-- message carrying the text to draw; every other token keeps receiving the
+-- FCM-displayed notification, so older app versions are unaffected.
+
+alter table public.push_tokens
+  add column if not exists native_messages boolean not null default false;